@@ -0,0 +1,66 @@
+package sim.app.firecontrol;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The allocation of a manager alone, TaskAllocator.allocate with each
+ * strategy, over a fixed seed matrix of utilities: each contractor proposes
+ * for most of the tasks, and the capacities take all the contractors as in
+ * UAV.defineTaskPriorities.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class AllocationBenchmark{
+
+	@Param({"32", "256"})
+	public int contractors;
+
+	@Param({"6"})
+	public int tasks;
+
+	@Param({"GREEDY", "HUNGARIAN", "AUCTION"})
+	public AllocationStrategy strategy;
+
+	private TaskAllocator allocator;
+	private double[] cost;
+	private int[] capacity;
+	private int[] assignment;
+
+	@Setup(Level.Trial)
+	public void setup(){
+		Random random = new Random(Fixtures.SEED);
+		cost = new double[contractors * tasks];
+		for(int i=0; i<cost.length; i++){
+			cost[i] = random.nextInt(8) == 0 ? TaskAllocator.NO_BID : random.nextDouble();
+		}
+		capacity = new int[tasks];
+		for(int t=0; t<tasks; t++){
+			capacity[t] = contractors / tasks + (t < contractors % tasks ? 1 : 0);
+		}
+		assignment = new int[contractors];
+		allocator = new TaskAllocator(strategy);
+	}
+
+	@Benchmark
+	public int allocate(){
+		return allocator.allocate(contractors, tasks, cost, capacity, assignment);
+	}
+}
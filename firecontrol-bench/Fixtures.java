@@ -0,0 +1,121 @@
+package sim.app.firecontrol;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Fixed seed worlds shared by the benchmarks.
+ * The runs built here do not write their outcome anywhere (@see NULL_SINK).
+ */
+final class Fixtures{
+
+	static final long SEED = 42;
+
+	/* drop the outcome of the runs */
+	static final ResultSink NULL_SINK = new ResultSink(){
+		@Override
+		public void write(RunResult result){}
+
+		@Override
+		public void flush(){}
+
+		@Override
+		public void close(){}
+	};
+
+	private Fixtures(){}
+
+	/**
+	 * @return a started simulation, not stepped yet
+	 */
+	static Ignite newWorld(int size, int uavs, PropagationMode mode){
+		return newWorld(size, uavs, mode, TravelMode.STEPPED);
+	}
+
+	/**
+	 * @return a started simulation whose UAVs move as given, not stepped yet
+	 */
+	static Ignite newWorld(int size, int uavs, PropagationMode mode, TravelMode travel){
+		Ignite ignite = new Ignite(SEED);
+		ignite.config.width = size;
+		ignite.config.height = size;
+		ignite.config.travel = travel;
+		ignite.numUAVs = uavs;
+		ignite.config.propagationMode = mode;
+		ignite.resultSink = NULL_SINK;
+		ignite.start();
+		return ignite;
+	}
+
+	/**
+	 * @return a started simulation, after the given number of steps
+	 */
+	static Ignite newWorld(int size, int uavs, PropagationMode mode, int steps){
+		Ignite ignite = newWorld(size, uavs, mode);
+		for(int i=0; i<steps && ignite.schedule.step(ignite); i++);
+		return ignite;
+	}
+
+	/**
+	 * @return the indexes of the cells on fire
+	 */
+	static int[] cellsOnFire(Forest forest){
+		List<Integer> cells = new ArrayList<>();
+		for(int index=0; index<forest.size(); index++){
+			if(forest.is(index, CellType.FIRE)){
+				cells.add(index);
+			}
+		}
+		int[] result = new int[cells.size()];
+		for(int i=0; i<result.length; i++){
+			result[i] = cells.get(i);
+		}
+		return result;
+	}
+
+	/**
+	 * The packets sent and received by each UAV, to undo the messages of a
+	 * benchmarked call.
+	 */
+	static final class Mailboxes{
+		private final UAV[] uavs;
+		private final DataPacket[][] sent;
+		private final DataPacket[][] received;
+
+		Mailboxes(Ignite ignite){
+			this.uavs = new UAV[ignite.UAVs.numObjs];
+			this.sent = new DataPacket[uavs.length][];
+			this.received = new DataPacket[uavs.length][];
+			for(int i=0; i<uavs.length; i++){
+				uavs[i] = (UAV) ignite.UAVs.objs[i];
+				sent[i] = copy(uavs[i].sentDataPackets);
+				received[i] = copy(uavs[i].receivedDataPackets);
+			}
+		}
+
+		/**
+		 * Put back the packets of the snapshot
+		 */
+		void restore(){
+			for(int i=0; i<uavs.length; i++){
+				restore(uavs[i].sentDataPackets, sent[i]);
+				restore(uavs[i].receivedDataPackets, received[i]);
+			}
+		}
+
+		private static DataPacket[] copy(Mailbox mailbox){
+			DataPacket[] packets = new DataPacket[mailbox.size()];
+			for(int i=0; i<packets.length; i++){
+				packets[i] = mailbox.get(i);
+			}
+			return packets;
+		}
+
+		private static void restore(Mailbox mailbox, DataPacket[] packets){
+			mailbox.clear();
+			for(DataPacket packet : packets){
+				mailbox.add(packet);
+			}
+		}
+	}
+}
@@ -0,0 +1,84 @@
+package sim.app.firecontrol;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The spread of the fire (FireDynamics.step over the cells of the active
+ * frontier), a batch of STEPS real steps of a world without UAVs, reported per
+ * step.
+ * Each invocation starts from the same world, 500 steps after the ignition,
+ * restored from a checkpoint taken once per trial; its first step, which
+ * creates the kernel of VECTOR, is not measured.
+ * VECTOR is only run when the benchmarks are built with the kernel, @see RunBenchmarks.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class PropagationBenchmark{
+
+	private static final int STEPS = 100;
+
+	@Param({"60", "200", "1000"})
+	public int size;
+
+	@Param({"SEQUENTIAL", "TILED"})
+	public PropagationMode mode;
+
+	private File checkpoint;
+	private Ignite ignite;
+
+	@Setup(Level.Trial)
+	public void snapshot() throws IOException{
+		Ignite world = Fixtures.newWorld(size, 0, mode, 500);
+		checkpoint = File.createTempFile("propagation", ".ckpt");
+		Checkpoint.write(world, checkpoint);
+		world.finish();
+	}
+
+	@TearDown(Level.Trial)
+	public void deleteSnapshot(){
+		checkpoint.delete();
+	}
+
+	@Setup(Level.Invocation)
+	public void setup(){
+		ignite = new Ignite(Fixtures.SEED);
+		ignite.config.propagationMode = mode;
+		ignite.resultSink = Fixtures.NULL_SINK;
+		ignite.restoreFrom = checkpoint;
+		ignite.start();
+		ignite.schedule.step(ignite);
+	}
+
+	@TearDown(Level.Invocation)
+	public void tearDown(){
+		ignite.finish();
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(STEPS)
+	public int step(){
+		for(int i=0; i<STEPS && ignite.schedule.step(ignite); i++);
+		return ignite.fireDynamics.getActiveCells();
+	}
+}
@@ -0,0 +1,37 @@
+package sim.app.firecontrol;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Run all the benchmarks with the gc profiler, reporting both the throughput
+ * and the allocation rate. Any JMH option can be given on the command line,
+ * e.g. a regexp to select the benchmarks, or -rf csv -rff bench.csv to save
+ * the results.
+ * When the VECTOR kernel has been built in (the vector profile of the pom) the
+ * forks get the incubator module and PropagationBenchmark runs VECTOR too.
+ */
+public class RunBenchmarks{
+
+	public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+		CommandLineOptions commandLine = new CommandLineOptions(args);
+		OptionsBuilder options = new OptionsBuilder();
+		options.parent(commandLine);
+		options.addProfiler(GCProfiler.class);
+		//all the benchmarks, unless some are selected
+		if(commandLine.getIncludes().isEmpty()){
+			options.include("sim\\.app\\.firecontrol\\..*Benchmark");
+		}
+		if(RunBenchmarks.class.getResource("VectorRowKernel.class") != null){
+			options.jvmArgsAppend("--add-modules=jdk.incubator.vector");
+			if(!commandLine.getParameter("mode").hasValue()){
+				options.param("mode", "SEQUENTIAL", "TILED", "VECTOR");
+			}
+		}
+		new Runner(options.build()).run();
+	}
+}
@@ -0,0 +1,55 @@
+package sim.app.firecontrol;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Task bookkeeping: a cell on fire leaves its task, the tasks are refreshed
+ * (possibly split) and the cell takes fire again (possibly merging them back).
+ * The world is rebuilt for each iteration since splits allocate new tasks.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class TaskTrackerBenchmark{
+
+	@Param({"60", "200"})
+	public int size;
+
+	private Ignite ignite;
+	private int[] cells;
+	private int next;
+
+	@Setup(Level.Iteration)
+	public void setup(){
+		ignite = Fixtures.newWorld(size, 0, PropagationMode.SEQUENTIAL, 1000);
+		cells = Fixtures.cellsOnFire(ignite.forest);
+		next = 0;
+	}
+
+	@Benchmark
+	public int extinguishAndReignite(){
+		int index = cells[next];
+		next = (next + 1) % cells.length;
+		TaskTracker tracker = ignite.taskTracker;
+		tracker.notifyExtinguishedFire(index);
+		tracker.refresh();
+		tracker.notifyNewFire(index);
+		return ignite.tasks.size();
+	}
+}
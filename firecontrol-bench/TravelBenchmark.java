@@ -0,0 +1,57 @@
+package sim.app.firecontrol;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The first STEPS steps of a run, fire and UAVs, for each TravelMode: most of
+ * the steps of the UAVs are moves toward their target.
+ * Each invocation starts from a new world, its generation is not measured.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class TravelBenchmark{
+
+	private static final int STEPS = 500;
+
+	@Param({"32", "200"})
+	public int uavs;
+
+	@Param({"STEPPED", "SCHEDULED"})
+	public TravelMode travel;
+
+	private Ignite ignite;
+
+	@Setup(Level.Invocation)
+	public void setup(){
+		ignite = Fixtures.newWorld(100, uavs, PropagationMode.SEQUENTIAL, travel);
+	}
+
+	@TearDown(Level.Invocation)
+	public void tearDown(){
+		ignite.finish();
+	}
+
+	@Benchmark
+	public long run(){
+		for(int i=0; i<STEPS && ignite.schedule.step(ignite); i++);
+		return ignite.schedule.getSteps();
+	}
+}
@@ -0,0 +1,137 @@
+package sim.app.firecontrol;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import sim.util.Double3D;
+
+/**
+ * The decisions of the UAVs: cell selection, the allocation done by a manager
+ * in selectTask and the election of the managers.
+ * The world is stepped until a UAV works on a task, then each call is undone so
+ * that every invocation starts from the same state.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class UAVBenchmark{
+
+	@Param({"8", "32"})
+	public int uavs;
+
+	private Ignite ignite;
+	private UAV worker; //a UAV with a task and a cell claimed
+	private UAV manager;
+
+	@Setup(Level.Trial)
+	public void setup(){
+		ignite = Fixtures.newWorld(60, uavs, PropagationMode.SEQUENTIAL, 2000);
+		for(int i=0; worker == null && i<20000 && ignite.schedule.step(ignite); i++){
+			for(Object obj : ignite.UAVs){
+				UAV uav = (UAV) obj;
+				if(uav.myTask != null && uav.claimedCell >= 0 && !uav.myTask.cells.isEmpty()){
+					worker = uav;
+					break;
+				}
+			}
+		}
+		if(worker == null){
+			throw new IllegalStateException("no UAV is working on a task");
+		}
+		manager = (UAV) ignite.UAVs.objs[0];
+		//each call allocates a round of the manager alone
+		manager.contractRound.close();
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown(){
+		ignite.finish();
+	}
+
+	@Benchmark
+	public Double3D selectCell(){
+		Task task = worker.myTask;
+		Double3D target = worker.target;
+		int claimed = worker.claimedCell;
+		worker.selectCell(ignite);
+		Double3D selected = worker.target;
+		worker.myTask = task;
+		worker.target = target;
+		worker.claim(ignite.forest, claimed);
+		return selected;
+	}
+
+	/**
+	 * Manager side of the allocation, without waiting for the proposals
+	 */
+	@Benchmark
+	public Task selectTask(){
+		UAVRole role = manager.role;
+		Task task = manager.myTask;
+		Double3D target = manager.target;
+		Fixtures.Mailboxes mailboxes = new Fixtures.Mailboxes(ignite);
+
+		manager.role = UAVRole.LONE_MANAGER;
+		manager.myTask = null;
+		manager.selectTask(ignite);
+		Task selected = manager.myTask;
+
+		mailboxes.restore();
+		manager.role = role;
+		manager.myTask = task;
+		manager.target = target;
+		return selected;
+	}
+
+	/**
+	 * A whole election, as if all the UAVs moved
+	 */
+	@Benchmark
+	public UAVRole electManagers(){
+		UAVRole[] roles = new UAVRole[ignite.UAVs.numObjs];
+		for(int i=0; i<roles.length; i++){
+			roles[i] = ((UAV) ignite.UAVs.objs[i]).role;
+		}
+		ignite.election.invalidate();
+		ignite.election.elect(ignite);
+		UAVRole elected = manager.role;
+		for(int i=0; i<roles.length; i++){
+			ignite.election.setRole((UAV) ignite.UAVs.objs[i], roles[i]);
+		}
+		return elected;
+	}
+
+	/**
+	 * An election after a single UAV moved
+	 */
+	@Benchmark
+	public UAVRole electManagersAfterMove(){
+		UAVRole[] roles = new UAVRole[ignite.UAVs.numObjs];
+		for(int i=0; i<roles.length; i++){
+			roles[i] = ((UAV) ignite.UAVs.objs[i]).role;
+		}
+		ignite.election.moved(manager);
+		ignite.election.elect(ignite);
+		UAVRole elected = manager.role;
+		for(int i=0; i<roles.length; i++){
+			ignite.election.setRole((UAV) ignite.UAVs.objs[i], roles[i]);
+		}
+		return elected;
+	}
+}
@@ -0,0 +1,223 @@
+package sim.app.firecontrol;
+
+import java.util.BitSet;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.LongVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+import sim.util.IntBag;
+
+/**
+ * Fire propagation over the rows of the forest with the Vector API, the VECTOR
+ * mode of FireDynamics (@see PropagationMode).
+ * The rules are the ones of the TILED mode: each cell pulls its own update, a
+ * fire cell burns and a normal cell next to a fire is enhanced once, reading the
+ * types at the beginning of the step. Only the chunks of the rows within one
+ * cell from a fire are processed, a whole vector of cells at a time:
+ * - the fire neighbors of the cells are found OR-ing shifted copies of the fire
+ *   mask of the row above, of the row and of the row below
+ * - the random numbers are hashed from the seed, the step and the index of the
+ *   cell (splitmix64), so a whole vector is drawn at once, with no state, and
+ *   the outcome does not depend on the order of the rows
+ * - the gaussian decay is computed with the vector exp
+ * The changes of type are returned to FireDynamics, to be committed in row order.
+ *
+ * Needs the jdk.incubator.vector module, e.g. javac/java --add-modules jdk.incubator.vector,
+ * hence it lives in its own source root and is only loaded in VECTOR mode (@see RowKernel.load).
+ */
+final class VectorRowKernel implements RowKernel{
+
+	private static final VectorSpecies<Byte> BYTES = ByteVector.SPECIES_PREFERRED;
+	private static final VectorSpecies<Double> DOUBLES = DoubleVector.SPECIES_PREFERRED;
+	private static final VectorSpecies<Long> LONGS = LongVector.SPECIES_PREFERRED;
+
+	/* variance of the gaussian decay of the status, @see FireDynamics.burn */
+	private static final double VARIANCE = 0.2;
+	/* exp(-RATE*u*u) == Ignite.gaussianPDF(0, u, VARIANCE), and (0, 2u, VARIANCE) for the normal cells */
+	private static final double FIRE_RATE = 1 / (2*VARIANCE*VARIANCE);
+	private static final double NORMAL_RATE = 4 / (2*VARIANCE*VARIANCE);
+
+	private static final byte FIRE = (byte) CellType.FIRE.ordinal();
+	private static final byte NORMAL = (byte) CellType.NORMAL.ordinal();
+	private static final LongVector LANES = LongVector.fromArray(LONGS, lanes(), 0);
+
+	private final int width;
+	private final int height;
+
+	/* the rows are split in chunks, only the chunks within one cell from a fire are processed */
+	private static final int CHUNK = 64;
+	private final int chunksPerRow;
+	private final BitSet fireChunks;
+	private final BitSet activeChunks;
+
+	/* fire mask of the row above, of the row and of the row below, padded with a
+	 * cell on each side: fire[r][x+1] is 1 if the cell x is on fire */
+	private final byte[][] fire = new byte[3][];
+	/* the cells of the current row that burn and the ones that are enhanced */
+	private final boolean[] burns;
+	private final boolean[] enhanced;
+
+	VectorRowKernel(Forest forest){
+		this.width = forest.width;
+		this.height = forest.height;
+		this.chunksPerRow = (width + CHUNK - 1) / CHUNK;
+		this.fireChunks = new BitSet(height*chunksPerRow);
+		this.activeChunks = new BitSet(height*chunksPerRow);
+		for(int r=0; r<3; r++){
+			fire[r] = new byte[width + 2 + BYTES.length()];
+		}
+		this.burns = new boolean[width + BYTES.length()];
+		this.enhanced = new boolean[width + BYTES.length()];
+	}
+
+	@Override
+	public int process(Ignite ignite, IntBag burning, IntBag burned, IntBag igniting){
+		Forest forest = ignite.forest;
+		//the chunks of the fires, and the ones next to a fire on the border of a chunk
+		for(int i=0; i<burning.numObjs; i++){
+			int index = burning.objs[i];
+			int x = forest.xOf(index);
+			int chunk = forest.yOf(index)*chunksPerRow + x/CHUNK;
+			fireChunks.set(chunk);
+			if(x % CHUNK == 0 && x > 0){
+				fireChunks.set(chunk - 1);
+			} else if(x % CHUNK == CHUNK-1 && x < width-1){
+				fireChunks.set(chunk + 1);
+			}
+		}
+		//and the same chunks of the rows above and below
+		for(int c=fireChunks.nextSetBit(0); c>=0; c=fireChunks.nextSetBit(c+1)){
+			activeChunks.set(c);
+			if(c >= chunksPerRow){
+				activeChunks.set(c - chunksPerRow);
+			}
+			if(c + chunksPerRow < height*chunksPerRow){
+				activeChunks.set(c + chunksPerRow);
+			}
+		}
+		fireChunks.clear();
+
+		//each run of consecutive chunks of a row is a span
+		int spans = 0;
+		for(int c=activeChunks.nextSetBit(0); c>=0; ){
+			int y = c / chunksPerRow;
+			int end = Math.min(activeChunks.nextClearBit(c), (y+1)*chunksPerRow);
+			int from = (c - y*chunksPerRow) * CHUNK;
+			int to = Math.min((end - y*chunksPerRow) * CHUNK, width);
+			processRow(ignite, forest, y, from, to, burned, igniting);
+			spans++;
+			c = activeChunks.nextSetBit(end);
+		}
+		activeChunks.clear();
+		return spans;
+	}
+
+	private void processRow(Ignite ignite, Forest forest, int y, int from, int to, IntBag burned, IntBag igniting){
+		IgniteConfig config = ignite.config;
+		byte[] type = forest.type;
+		int row = y*width;
+
+		//fire masks of the rows around, over the span and a cell on each side.
+		//The lanes past the span are not used, the masked loads and stores are
+		//only needed at the end of the planes, where they are slower
+		int maskFrom = Math.max(from-1, 0);
+		int maskTo = Math.min(to+1, width);
+		for(int r=0; r<3; r++){
+			int yy = y + r - 1;
+			for(int x=maskFrom; x<maskTo; x+=BYTES.length()){
+				ByteVector fires;
+				if(yy < 0 || yy >= height){
+					fires = ByteVector.zero(BYTES);
+				} else {
+					fires = ByteVector.zero(BYTES).blend((byte) 1, loadTypes(type, yy*width + x).eq(FIRE));
+				}
+				fires.intoArray(fire[r], x+1);
+			}
+			//the padding past the last cell is never on fire
+			fire[r][width+1] = 0;
+		}
+
+		//the cells that burn, and the normal cells with a neighbor on fire
+		for(int x=from; x<to; x+=BYTES.length()){
+			VectorMask<Byte> inRange = BYTES.indexInRange(x, to);
+			ByteVector near = ByteVector.fromArray(BYTES, fire[0], x)
+					.or(ByteVector.fromArray(BYTES, fire[0], x+1))
+					.or(ByteVector.fromArray(BYTES, fire[0], x+2))
+					.or(ByteVector.fromArray(BYTES, fire[1], x))
+					.or(ByteVector.fromArray(BYTES, fire[1], x+2))
+					.or(ByteVector.fromArray(BYTES, fire[2], x))
+					.or(ByteVector.fromArray(BYTES, fire[2], x+1))
+					.or(ByteVector.fromArray(BYTES, fire[2], x+2));
+			ByteVector types = loadTypes(type, row + x);
+			types.eq(FIRE).and(inRange).intoArray(burns, x);
+			types.eq(NORMAL).and(near.eq((byte) 1)).and(inRange).intoArray(enhanced, x);
+		}
+
+		//update the status, a vector of cells at a time
+		long key = FireDynamics.streamSeed(ignite, y);
+		DoubleVector fireMultiplier = DoubleVector.broadcast(DOUBLES, config.fireStatusMultiplier);
+		for(int x=from; x<to; x+=DOUBLES.length()){
+			VectorMask<Double> burning = VectorMask.fromArray(DOUBLES, burns, x);
+			VectorMask<Double> active = burning.or(VectorMask.fromArray(DOUBLES, enhanced, x));
+			if(!active.anyTrue()){
+				continue;
+			}
+			int offset = row + x;
+			boolean whole = offset + DOUBLES.length() <= forest.status.length;
+			DoubleVector status = whole ? DoubleVector.fromArray(DOUBLES, forest.status, offset)
+					: DoubleVector.fromArray(DOUBLES, forest.status, offset, DOUBLES.indexInRange(offset, forest.status.length));
+			DoubleVector u = uniform(key, offset);
+			DoubleVector rate = DoubleVector.broadcast(DOUBLES, -NORMAL_RATE).blend(-FIRE_RATE, burning);
+			DoubleVector scale = DoubleVector.broadcast(DOUBLES, config.normalStatusMultiplier).blend(status.mul(fireMultiplier), burning);
+			status = status.blend(status.sub(scale.mul(u.mul(u).mul(rate).lanewise(VectorOperators.EXP))), active);
+			if(whole){
+				status.intoArray(forest.status, offset);
+			} else {
+				status.intoArray(forest.status, offset, DOUBLES.indexInRange(offset, forest.status.length));
+			}
+
+			long below = status.lt(config.statusThreshold).and(active).toLong();
+			while(below != 0){
+				int lane = Long.numberOfTrailingZeros(below);
+				below &= below - 1;
+				if(burns[x + lane]){
+					burned.add(offset + lane);
+				} else {
+					igniting.add(offset + lane);
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return the types of the cells from the given index, NORMAL past the end of the plane
+	 */
+	private static ByteVector loadTypes(byte[] type, int index){
+		if(index + BYTES.length() <= type.length){
+			return ByteVector.fromArray(BYTES, type, index);
+		}
+		return ByteVector.fromArray(BYTES, type, index, BYTES.indexInRange(index, type.length));
+	}
+
+	/**
+	 * @return uniform numbers in [0, 1), one for each of the cells from the given index
+	 */
+	private static DoubleVector uniform(long key, int index){
+		LongVector z = LANES.add(index).mul(0x9E3779B97F4A7C15L).add(key);
+		z = z.lanewise(VectorOperators.XOR, z.lanewise(VectorOperators.LSHR, 30)).mul(0xBF58476D1CE4E5B9L);
+		z = z.lanewise(VectorOperators.XOR, z.lanewise(VectorOperators.LSHR, 27)).mul(0x94D049BB133111EBL);
+		z = z.lanewise(VectorOperators.XOR, z.lanewise(VectorOperators.LSHR, 31));
+		return ((DoubleVector) z.lanewise(VectorOperators.LSHR, 11).convert(VectorOperators.L2D, 0)).mul(0x1.0p-53);
+	}
+
+	private static long[] lanes(){
+		long[] lanes = new long[LONGS.length()];
+		for(int i=0; i<lanes.length; i++){
+			lanes[i] = i;
+		}
+		return lanes;
+	}
+}
@@ -0,0 +1,19 @@
+/**
+ * Define how a manager assigns the tasks to the contractors of a CNP round.
+ * GREEDY, the original allocation: the contractor and the task with the best
+ * utility first, then the best among the ones left, until no pair is left
+ * HUNGARIAN, the assignment with the best total utility, as a min cost flow
+ * (successive shortest paths, the Hungarian method extended to the capacities
+ * of the tasks); exact, its cost grows with the square of the contractors
+ * AUCTION, the auction algorithm: the contractors bid for the places in the
+ * tasks, raising their prices; within a tiny margin of the best total utility
+ * and faster with many contractors
+ *
+ * @see TaskAllocator
+ */
+
+package sim.app.firecontrol;
+
+public enum AllocationStrategy {
+	GREEDY, HUNGARIAN, AUCTION
+}
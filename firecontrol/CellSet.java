@@ -0,0 +1,156 @@
+package sim.app.firecontrol;
+
+import java.util.Arrays;
+
+/**
+ * Set of cells of the forest, identified by their index in the Forest planes.
+ * The cells are kept in a dense array, so they can be visited in a simple loop
+ * with get(i) for i in [0, size()), while an open addressing table maps every
+ * cell to its position in the array. add, remove and contains are O(1) and do
+ * not allocate (apart from growing the arrays).
+ *
+ * Removing a cell moves the last one in its place, hence the order of the cells
+ * is not preserved.
+ *
+ * @see Forest
+ */
+public class CellSet implements java.io.Serializable{
+	private static final long serialVersionUID = 1L;
+
+	private int[] cells; //the cells, dense
+	private int size;
+	private int[] keys; //the cells + 1, 0 marks a free slot
+	private int[] positions; //the position in cells of the key in the same slot
+	private int mask;
+
+	public CellSet(){
+		this(8);
+	}
+
+	public CellSet(int expectedSize){
+		int capacity = Integer.highestOneBit(Math.max(expectedSize, 4) * 2 - 1) << 1;
+		this.cells = new int[Math.max(expectedSize, 4)];
+		this.keys = new int[capacity];
+		this.positions = new int[capacity];
+		this.mask = capacity - 1;
+	}
+
+	public int size(){
+		return size;
+	}
+
+	public boolean isEmpty(){
+		return size == 0;
+	}
+
+	/**
+	 * @return the i-th cell of the set, 0 <= i < size()
+	 */
+	public int get(int i){
+		return cells[i];
+	}
+
+	public boolean contains(int cell){
+		return slotOf(cell) >= 0;
+	}
+
+	/**
+	 * @return true, if the cell was not already in the set
+	 */
+	public boolean add(int cell){
+		if(slotOf(cell) >= 0){
+			return false;
+		}
+		if((size + 1) * 2 > keys.length){
+			rehash(keys.length * 2);
+		}
+		if(size == cells.length){
+			cells = Arrays.copyOf(cells, size * 2);
+		}
+		cells[size] = cell;
+		insert(cell + 1, size);
+		size++;
+		return true;
+	}
+
+	/**
+	 * @return true, if the cell was in the set
+	 */
+	public boolean remove(int cell){
+		int slot = slotOf(cell);
+		if(slot < 0){
+			return false;
+		}
+		int position = positions[slot];
+		delete(slot);
+		size--;
+		//fill the hole with the last cell
+		if(position != size){
+			int last = cells[size];
+			cells[position] = last;
+			positions[slotOf(last)] = position;
+		}
+		return true;
+	}
+
+	public void clear(){
+		Arrays.fill(keys, 0);
+		size = 0;
+	}
+
+	private static int hash(int key){
+		int h = key * 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+
+	private int slotOf(int cell){
+		int key = cell + 1;
+		for(int slot = hash(key) & mask; ; slot = (slot + 1) & mask){
+			if(keys[slot] == 0){
+				return -1;
+			}
+			if(keys[slot] == key){
+				return slot;
+			}
+		}
+	}
+
+	private void insert(int key, int position){
+		int slot = hash(key) & mask;
+		while(keys[slot] != 0){
+			slot = (slot + 1) & mask;
+		}
+		keys[slot] = key;
+		positions[slot] = position;
+	}
+
+	/**
+	 * Free a slot shifting back the keys of the same cluster (linear probing)
+	 */
+	private void delete(int hole){
+		int slot = hole;
+		while(true){
+			slot = (slot + 1) & mask;
+			if(keys[slot] == 0){
+				break;
+			}
+			int home = hash(keys[slot]) & mask;
+			boolean reachable = hole <= slot ? (hole < home && home <= slot) : (hole < home || home <= slot);
+			if(!reachable){
+				keys[hole] = keys[slot];
+				positions[hole] = positions[slot];
+				hole = slot;
+			}
+		}
+		keys[hole] = 0;
+	}
+
+	private void rehash(int capacity){
+		keys = new int[capacity];
+		positions = new int[capacity];
+		mask = capacity - 1;
+		for(int i=0; i<size; i++){
+			insert(cells[i] + 1, i);
+		}
+	}
+}
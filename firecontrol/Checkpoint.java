@@ -0,0 +1,506 @@
+package sim.app.firecontrol;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.IdentityHashMap;
+import java.util.LinkedList;
+import java.util.Map;
+
+import sim.engine.Schedule;
+import sim.engine.SimState;
+import sim.engine.Steppable;
+import sim.field.continuous.Continuous3D;
+import sim.util.Bag;
+import sim.util.Double3D;
+import sim.util.Int2D;
+
+/**
+ * Compact binary checkpoint of a running simulation.
+ * Instead of serializing the whole SimState, only the state that cannot be
+ * derived is written to a memory-mapped file:
+ * - the params of the run, the counters, the random generator and the schedule time
+ * - the planes of the forest (type, status, owner), in bulk
+ * - the tasks (cells, centroid, merges) and the cells on fire in visit order
+ * - the UAVs (position, target, task, role, travel), their packets and the
+ *   open round of the managers
+ *
+ * The packets are written once even if they are in the mailboxes of many UAVs,
+ * and the references of the packets to the tasks are kept, so that the
+ * restored UAVs go on with the same rounds of the protocol.
+ * The enhanced flags of the forest are not written: they are cleared at the
+ * beginning of the next step anyway.
+ *
+ * Write a checkpoint between two steps with write(), or periodically with
+ * IgniteConfig.checkpointEvery. Resume it by setting Ignite.restoreFrom before
+ * start(): the world is not generated, the run goes on from the checkpoint.
+ *
+ * Layout: magic, version, width, height, status, owner and type planes, then
+ * the length of the rest of the state and the rest of the state.
+ */
+public class Checkpoint{
+
+	private static final int MAGIC = 0x46434350; //FCCP
+	private static final int VERSION = 12;
+
+	private Checkpoint(){}
+
+	/**
+	 * Write the state of the given run, between two steps.
+	 */
+	public static void write(Ignite ignite, File file) throws IOException{
+		write(ignite, file, ignite.schedule.getSteps());
+	}
+
+	/**
+	 * @param steps, the number of steps done, including the current one if any
+	 */
+	private static void write(Ignite ignite, File file, long steps) throws IOException{
+		Forest forest = ignite.forest;
+		byte[] state = writeState(ignite, steps);
+
+		long size = 16 + 13L*forest.size() + 4 + state.length;
+		//write aside and then replace, a crash never leaves a broken checkpoint
+		Path path = file.toPath().toAbsolutePath();
+		Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+		try(FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.READ,
+				StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)){
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+			buffer.putInt(MAGIC);
+			buffer.putInt(VERSION);
+			buffer.putInt(forest.width);
+			buffer.putInt(forest.height);
+			buffer.asDoubleBuffer().put(forest.status);
+			buffer.position(buffer.position() + 8*forest.size());
+			buffer.asIntBuffer().put(forest.owner);
+			buffer.position(buffer.position() + 4*forest.size());
+			buffer.put(forest.type);
+			buffer.putInt(state.length);
+			buffer.put(state);
+			buffer.force();
+		}
+		Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/**
+	 * Rebuild the run of the given Ignite from the checkpoint.
+	 * Called by Ignite.start() in place of the generation of the world, the
+	 * agents are scheduled by the caller.
+	 */
+	static void restore(Ignite ignite, File file) throws IOException{
+		try(FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)){
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			if(buffer.getInt() != MAGIC){
+				throw new IOException(file + " is not a checkpoint");
+			}
+			int version = buffer.getInt();
+			if(version != VERSION){
+				throw new IOException("Unsupported checkpoint version " + version);
+			}
+			Forest forest = new Forest(buffer.getInt(), buffer.getInt());
+			buffer.asDoubleBuffer().get(forest.status);
+			buffer.position(buffer.position() + 8*forest.size());
+			int[] owner = new int[forest.size()];
+			buffer.asIntBuffer().get(owner);
+			buffer.position(buffer.position() + 4*forest.size());
+			buffer.get(forest.type);
+			byte[] state = new byte[buffer.getInt()];
+			buffer.get(state);
+
+			ignite.forest = forest;
+			readState(ignite, new DataInputStream(new ByteArrayInputStream(state)));
+			//adding the cells to the tasks set the owners to the representatives,
+			//the plane is put back as it was, @see TaskTracker.find
+			System.arraycopy(owner, 0, forest.owner, 0, owner.length);
+		}
+	}
+
+	private static byte[] writeState(Ignite ignite, long steps) throws IOException{
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+
+		//run
+		out.writeLong(ignite.seed());
+		out.writeInt(ignite.numUAVs);
+		writeConfig(ignite.config, out);
+		out.writeDouble(ignite.schedule.getTime());
+		out.writeLong(steps);
+		IgniteStats stats = ignite.stats;
+		out.writeLong(stats.getCellsOnFire());
+		out.writeLong(stats.getCellsBurned());
+		out.writeLong(stats.getCellsOnWater());
+		out.writeLong(stats.getMessagesSent());
+		out.writeLong(stats.getMessagesDropped());
+		out.writeInt(stats.selfIgniteLeft);
+		ignite.random.writeState(out);
+
+		//tasks, all of them since the packets and the UAVs may refer to old ones
+		TaskTracker tracker = ignite.taskTracker;
+		out.writeInt(tracker.getTaskCount());
+		for(int id=0; id<tracker.getTaskCount(); id++){
+			Task task = tracker.getTaskById(id);
+			out.writeInt(tracker.getParent(id));
+			out.writeInt(task.centroid.x);
+			out.writeInt(task.centroid.y);
+			out.writeInt(task.cells.size());
+			for(int i=0; i<task.cells.size(); i++){
+				out.writeInt(task.cells.get(i));
+			}
+		}
+		out.writeInt(ignite.tasks.size());
+		for(Task task : ignite.tasks){
+			out.writeInt(task.id);
+		}
+		int[] dirty = tracker.getDirty();
+		out.writeInt(dirty.length);
+		for(int id : dirty){
+			out.writeInt(id);
+		}
+		int[] burning = ignite.fireDynamics.getBurning();
+		out.writeInt(burning.length);
+		for(int index : burning){
+			out.writeInt(index);
+		}
+
+		//packets, each one once
+		Map<DataPacket, Integer> packets = new IdentityHashMap<>();
+		for(Object obj : ignite.UAVs){
+			UAV uav = (UAV) obj;
+			collect(uav.sentDataPackets, packets);
+			collect(uav.receivedDataPackets, packets);
+		}
+		DataPacket[] table = new DataPacket[packets.size()];
+		for(Map.Entry<DataPacket, Integer> entry : packets.entrySet()){
+			table[entry.getValue()] = entry.getKey();
+		}
+		out.writeInt(table.length);
+		for(DataPacket packet : table){
+			writePacket(packet, out);
+		}
+
+		//UAVs
+		out.writeInt(ignite.UAVs.numObjs);
+		for(Object obj : ignite.UAVs){
+			UAV uav = (UAV) obj;
+			out.writeInt(uav.id);
+			out.writeDouble(uav.x);
+			out.writeDouble(uav.y);
+			out.writeDouble(uav.z);
+			out.writeBoolean(uav.target != null);
+			if(uav.target != null){
+				out.writeDouble(uav.target.x);
+				out.writeDouble(uav.target.y);
+				out.writeDouble(uav.target.z);
+			}
+			out.writeInt(uav.action == null ? -1 : uav.action.ordinal());
+			out.writeByte(uav.role.ordinal());
+			out.writeInt(uav.myTask == null ? -1 : uav.myTask.id);
+			out.writeInt(uav.startedToExtinguishAt);
+			out.writeInt(uav.claimedCell);
+			writeTravel(uav, out);
+			out.writeLong(uav.packetCount);
+			writePackets(uav.sentDataPackets, packets, out);
+			writePackets(uav.receivedDataPackets, packets, out);
+			writeRound(uav.contractRound, out);
+		}
+		out.flush();
+		return bytes.toByteArray();
+	}
+
+	private static void readState(Ignite ignite, DataInputStream in) throws IOException{
+		Forest forest = ignite.forest;
+
+		//run
+		ignite.setSeed(in.readLong());
+		ignite.numUAVs = in.readInt();
+		IgniteConfig config = ignite.config;
+		readConfig(config, in);
+		double time = in.readDouble();
+		long steps = in.readLong();
+		IgniteStats stats = new IgniteStats(config);
+		stats.cellsOnFire.add(in.readLong());
+		stats.cellsBurned.add(in.readLong());
+		stats.cellsOnWater.add(in.readLong());
+		stats.messagesSent.add(in.readLong());
+		stats.messagesDropped.add(in.readLong());
+		stats.selfIgniteLeft = in.readInt();
+		ignite.stats = stats;
+		ignite.random.readState(in);
+		((RestorableSchedule) ignite.schedule).restore(time, steps);
+
+		//tasks
+		Task[] all = new Task[in.readInt()];
+		int[] parent = new int[all.length];
+		for(int id=0; id<all.length; id++){
+			parent[id] = in.readInt();
+			all[id] = new Task(id, forest, new Int2D(in.readInt(), in.readInt()), 0);
+			int cells = in.readInt();
+			for(int i=0; i<cells; i++){
+				all[id].addCell(in.readInt());
+			}
+		}
+		ignite.tasks = new LinkedList<>();
+		ignite.taskTracker = new TaskTracker(forest, ignite.tasks);
+		ignite.taskTracker.restore(all, parent, readInts(in), readInts(in));
+		ignite.fireDynamics = new FireDynamics(ignite);
+		ignite.fireDynamics.setBurning(readInts(in));
+
+		//packets
+		DataPacket[] table = new DataPacket[in.readInt()];
+		for(int i=0; i<table.length; i++){
+			table[i] = readPacket(in, all);
+		}
+
+		//UAVs
+		ignite.air = new Continuous3D(1, config.width, config.height, config.depth);
+		ignite.UAVs = new Bag();
+		int uavs = in.readInt();
+		for(int i=0; i<uavs; i++){
+			int id = in.readInt();
+			Double3D location = new Double3D(in.readDouble(), in.readDouble(), in.readDouble());
+			UAV uav = new UAV(id, location, config);
+			if(in.readBoolean()){
+				uav.target = new Double3D(in.readDouble(), in.readDouble(), in.readDouble());
+			}
+			int action = in.readInt();
+			uav.action = action < 0 ? null : AgentAction.values()[action];
+			uav.role = UAVRole.values()[in.readByte()];
+			int task = in.readInt();
+			uav.myTask = task < 0 ? null : all[task];
+			uav.startedToExtinguishAt = in.readInt();
+			uav.claim(forest, in.readInt());
+			readTravel(uav, in);
+			uav.packetCount = in.readLong();
+			readPackets(uav.sentDataPackets, table, in);
+			readPackets(uav.receivedDataPackets, table, in);
+			readRound(uav.contractRound, id, all, in);
+			ignite.air.setObjectLocation(uav, location);
+			ignite.UAVs.add(uav);
+		}
+	}
+
+	/**
+	 * The output settings (checkpointEvery, checkpointFile, eventLog) and the
+	 * threads (propagationThreads) are not part of the checkpoint, the ones of
+	 * the restoring run are kept.
+	 */
+	private static void writeConfig(IgniteConfig config, DataOutputStream out) throws IOException{
+		out.writeInt(config.width);
+		out.writeInt(config.height);
+		out.writeInt(config.depth);
+		out.writeInt(config.worldGeneration.ordinal());
+		out.writeInt(config.lakes);
+		out.writeInt(config.fires);
+		out.writeDouble(config.lakeRadius);
+		out.writeDouble(config.fireRadius);
+		out.writeDouble(config.roughness);
+		out.writeDouble(config.statusThreshold);
+		out.writeDouble(config.normalStatusMultiplier);
+		out.writeDouble(config.fireStatusMultiplier);
+		out.writeDouble(config.selfIgniteThreshold);
+		out.writeInt(config.selfIgniteMax);
+		out.writeInt(config.propagationMode.ordinal());
+		out.writeInt(config.tileSize);
+		out.writeDouble(config.linearvelocity);
+		out.writeDouble(config.communicationRange);
+		out.writeInt(config.stepToExtinguish);
+		out.writeInt(config.mailboxCapacity);
+		out.writeInt(config.allocation.ordinal());
+		out.writeInt(config.travel.ordinal());
+	}
+
+	private static void readConfig(IgniteConfig config, DataInputStream in) throws IOException{
+		config.width = in.readInt();
+		config.height = in.readInt();
+		config.depth = in.readInt();
+		config.worldGeneration = WorldGeneration.values()[in.readInt()];
+		config.lakes = in.readInt();
+		config.fires = in.readInt();
+		config.lakeRadius = in.readDouble();
+		config.fireRadius = in.readDouble();
+		config.roughness = in.readDouble();
+		config.statusThreshold = in.readDouble();
+		config.normalStatusMultiplier = in.readDouble();
+		config.fireStatusMultiplier = in.readDouble();
+		config.selfIgniteThreshold = in.readDouble();
+		config.selfIgniteMax = in.readInt();
+		config.propagationMode = PropagationMode.values()[in.readInt()];
+		config.tileSize = in.readInt();
+		config.linearvelocity = in.readDouble();
+		config.communicationRange = in.readDouble();
+		config.stepToExtinguish = in.readInt();
+		config.mailboxCapacity = in.readInt();
+		config.allocation = AllocationStrategy.values()[in.readInt()];
+		config.travel = TravelMode.values()[in.readInt()];
+	}
+
+	private static void collect(Mailbox list, Map<DataPacket, Integer> packets){
+		for(DataPacket packet : list){
+			if(!packets.containsKey(packet)){
+				packets.put(packet, packets.size());
+			}
+		}
+	}
+
+	private static void writePackets(Mailbox list, Map<DataPacket, Integer> packets, DataOutputStream out) throws IOException{
+		out.writeInt(list.size());
+		for(DataPacket packet : list){
+			out.writeInt(packets.get(packet));
+		}
+	}
+
+	private static void readPackets(Mailbox list, DataPacket[] table, DataInputStream in) throws IOException{
+		int size = in.readInt();
+		for(int i=0; i<size; i++){
+			list.add(table[in.readInt()]);
+		}
+	}
+
+	/**
+	 * The travel of the UAV, if any, and its turn among the UAVs waking up at
+	 * the same step, @see TravelMode.SCHEDULED
+	 */
+	private static void writeTravel(UAV uav, DataOutputStream out) throws IOException{
+		out.writeLong(uav.wakeOrder);
+		out.writeLong(uav.departedAt);
+		if(uav.departedAt >= 0){
+			out.writeLong(uav.arrivesAt);
+			out.writeDouble(uav.fromX);
+			out.writeDouble(uav.fromY);
+			out.writeDouble(uav.toX);
+			out.writeDouble(uav.toY);
+		}
+	}
+
+	private static void readTravel(UAV uav, DataInputStream in) throws IOException{
+		uav.wakeOrder = in.readLong();
+		uav.departedAt = in.readLong();
+		if(uav.departedAt >= 0){
+			uav.arrivesAt = in.readLong();
+			uav.fromX = in.readDouble();
+			uav.fromY = in.readDouble();
+			uav.toX = in.readDouble();
+			uav.toY = in.readDouble();
+		}
+	}
+
+	/**
+	 * The round, if open: its tasks, receivers and the utilities proposed
+	 */
+	private static void writeRound(ContractRound round, DataOutputStream out) throws IOException{
+		out.writeBoolean(round.isOpen());
+		if(!round.isOpen()){
+			return;
+		}
+		out.writeLong(round.getRoundID());
+		out.writeInt(round.getTaskCount());
+		for(int t=0; t<round.getTaskCount(); t++){
+			out.writeInt(round.getTasks()[t].id);
+		}
+		out.writeInt(round.getContractorCount() - 1);
+		for(int c=0; c<round.getContractorCount(); c++){
+			if(c != round.getManager()){
+				out.writeInt(round.getContractors()[c]);
+			}
+		}
+		out.writeInt(round.getProposals());
+		for(int b=0; b<round.getBids(); b++){
+			if(round.isProposed(b)){
+				out.writeInt(b);
+				out.writeDouble(round.getProposal(b));
+			}
+		}
+	}
+
+	private static void readRound(ContractRound round, int manager, Task[] all, DataInputStream in) throws IOException{
+		if(!in.readBoolean()){
+			return;
+		}
+		long roundID = in.readLong();
+		Task[] tasks = new Task[in.readInt()];
+		for(int t=0; t<tasks.length; t++){
+			tasks[t] = all[in.readInt()];
+		}
+		int[] receivers = readInts(in);
+		round.open(roundID, tasks, manager, receivers, receivers.length);
+		int proposals = in.readInt();
+		for(int i=0; i<proposals; i++){
+			round.setProposal(in.readInt(), in.readDouble());
+		}
+	}
+
+	private static void writePacket(DataPacket packet, DataOutputStream out) throws IOException{
+		out.writeLong(packet.packetID);
+		out.writeInt(packet.senderID);
+		out.writeLong(packet.timestamp);
+		out.writeInt(packet.type.ordinal());
+		out.writeLong(packet.resPacketID);
+		out.writeInt(packet.task == null ? -1 : packet.task.id);
+		out.writeDouble(packet.utility);
+	}
+
+	private static DataPacket readPacket(DataInputStream in, Task[] tasks) throws IOException{
+		long packetID = in.readLong();
+		int senderID = in.readInt();
+		long timestamp = in.readLong();
+		DataPacketType type = DataPacketType.values()[in.readInt()];
+		long resPacketID = in.readLong();
+		int task = in.readInt();
+		double utility = in.readDouble();
+		return new DataPacket(packetID, senderID, timestamp, type, resPacketID, task < 0 ? null : tasks[task], utility);
+	}
+
+	private static int[] readInts(DataInputStream in) throws IOException{
+		int[] values = new int[in.readInt()];
+		for(int i=0; i<values.length; i++){
+			values[i] = in.readInt();
+		}
+		return values;
+	}
+
+	/**
+	 * A schedule whose time and steps can be set, to resume a checkpoint.
+	 */
+	public static class RestorableSchedule extends Schedule{
+		private static final long serialVersionUID = 1L;
+
+		void restore(double time, long steps){
+			this.time = time;
+			this.steps = steps;
+		}
+	}
+
+	/**
+	 * Write a checkpoint every IgniteConfig.checkpointEvery steps.
+	 * Scheduled after all the other agents, so that the checkpoint holds
+	 * the state at the end of the step.
+	 */
+	static class Writer implements Steppable{
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		public void step(SimState state){
+			Ignite ignite = (Ignite) state;
+			IgniteConfig config = ignite.config;
+			//the current step is not counted yet
+			long steps = ignite.schedule.getSteps() + 1;
+			if(steps % config.checkpointEvery == 0){
+				try {
+					write(ignite, new File(config.checkpointFile), steps);
+				} catch (IOException e) {
+					System.err.println("Exception in Checkpoint.Writer.step() " + e.toString());
+					e.printStackTrace();
+				}
+			}
+		}
+	}
+}
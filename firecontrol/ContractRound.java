@@ -0,0 +1,219 @@
+package sim.app.firecontrol;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * The open CNP round of a manager: the BIDs it sent and the PROPOSEs received
+ * so far, @see UAV.selectTask.
+ * A round announces its tasks to the UAVs in range, a BID for each task and
+ * receiver, task by task and in the order of the receivers. The BIDs are sent
+ * one after the other, so their ids are the sequence that starts from the id
+ * of the round: the BID answered by a PROPOSE is found by its offset from the
+ * round id, and checking it costs nothing whatever the packets sent before.
+ * Each PROPOSE goes straight to the bid matrix of the round, the utility of
+ * each contractor (the manager and the receivers, by id) for each task of the
+ * round, so that the matrix is ready for the allocator once all the BIDs have
+ * a PROPOSE (@see TaskAllocator).
+ *
+ * The arrays are kept from a round to the next one, they only grow when a
+ * round has more contractors or tasks than the previous ones.
+ */
+public class ContractRound implements java.io.Serializable{
+	private static final long serialVersionUID = 1L;
+
+	private long roundID = -1; //id of the first BID
+	private Task[] tasks = new Task[0];
+	private int numTasks;
+	/* contractors by id, the manager among them at managerAt */
+	private int[] contractors = new int[0];
+	private int numContractors;
+	private int managerAt;
+	/* the BIDs sent, for each task a BID to each receiver */
+	private int receivers;
+	private int bids;
+	/* the BIDs answered and their number */
+	private final BitSet proposed = new BitSet();
+	private int proposals;
+	/* cost[c*numTasks + t], the utility of the contractor c for the task t */
+	private double[] cost = new double[0];
+
+	/**
+	 * Start a new round over the given tasks, forgetting the last one.
+	 * The BIDs to send have the ids from roundID, in the order of getBidTask
+	 * and getBidReceiver.
+	 * @param receivers, the UAVs in range by id, count of them
+	 */
+	public void open(long roundID, Task[] tasks, int manager, int[] receivers, int count){
+		this.roundID = roundID;
+		this.numTasks = tasks.length;
+		this.receivers = count;
+		this.bids = tasks.length * count;
+		this.proposals = 0;
+		this.proposed.clear();
+		if(this.tasks.length < numTasks){
+			this.tasks = new Task[numTasks];
+		}
+		System.arraycopy(tasks, 0, this.tasks, 0, numTasks);
+		if(contractors.length < count + 1){
+			contractors = new int[count + 1];
+		}
+		//the manager among the receivers, by id
+		managerAt = 0;
+		while(managerAt < count && receivers[managerAt] < manager){
+			contractors[managerAt] = receivers[managerAt];
+			managerAt++;
+		}
+		contractors[managerAt] = manager;
+		for(int r=managerAt; r<count; r++){
+			contractors[r + 1] = receivers[r];
+		}
+		numContractors = count + 1;
+		if(cost.length < numContractors * numTasks){
+			cost = new double[numContractors * numTasks];
+		}
+		Arrays.fill(cost, 0, numContractors * numTasks, TaskAllocator.NO_BID);
+	}
+
+	/**
+	 * Forget the round, e.g. once the tasks have been awarded
+	 */
+	public void close(){
+		roundID = -1;
+		numTasks = 0;
+		numContractors = 0;
+		managerAt = 0;
+		receivers = 0;
+		bids = 0;
+		proposals = 0;
+		proposed.clear();
+		Arrays.fill(tasks, null);
+	}
+
+	/**
+	 * @return true if BIDs have been sent and the round is not over
+	 */
+	public boolean isOpen(){
+		return bids > 0;
+	}
+
+	/**
+	 * @return true if every BID of the round has a PROPOSE
+	 */
+	public boolean isComplete(){
+		return bids > 0 && proposals == bids;
+	}
+
+	public long getRoundID(){
+		return roundID;
+	}
+
+	public int getBids(){
+		return bids;
+	}
+
+	public int getProposals(){
+		return proposals;
+	}
+
+	/**
+	 * @return the task announced by the given BID, from 0 to getBids()
+	 */
+	public int getBidTask(int bid){
+		return bid / receivers;
+	}
+
+	/**
+	 * @return the contractor the given BID is sent to, from 0 to getBids()
+	 */
+	public int getBidReceiver(int bid){
+		return contractorOf(bid % receivers);
+	}
+
+	/**
+	 * Record a PROPOSE, only the first one answering a BID of this round counts
+	 * @return true if the packet has been recorded
+	 */
+	public boolean propose(DataPacket packet){
+		long bid = packet.resPacketID - roundID;
+		if(roundID < 0 || bid < 0 || bid >= bids || proposed.get((int) bid)){
+			return false;
+		}
+		int c = getBidReceiver((int) bid);
+		if(contractors[c] != packet.senderID){
+			return false;
+		}
+		setProposal((int) bid, packet.utility);
+		return true;
+	}
+
+	/**
+	 * Record the utility proposed for a BID, e.g. when the round is restored
+	 */
+	public void setProposal(int bid, double utility){
+		if(!proposed.get(bid)){
+			proposed.set(bid);
+			proposals++;
+		}
+		cost[getBidReceiver(bid)*numTasks + getBidTask(bid)] = utility;
+	}
+
+	/**
+	 * @return true if the given BID has a PROPOSE
+	 */
+	public boolean isProposed(int bid){
+		return proposed.get(bid);
+	}
+
+	/**
+	 * @return the utility proposed for the given BID
+	 */
+	public double getProposal(int bid){
+		return cost[getBidReceiver(bid)*numTasks + getBidTask(bid)];
+	}
+
+	/**
+	 * Set the utility of a contractor, e.g. the one of the manager
+	 */
+	public void setUtility(int contractor, int task, double utility){
+		cost[contractor*numTasks + task] = utility;
+	}
+
+	/**
+	 * @return the index of the manager among the contractors
+	 */
+	public int getManager(){
+		return managerAt;
+	}
+
+	/**
+	 * @return the index of the r-th receiver among the contractors
+	 */
+	private int contractorOf(int r){
+		return r < managerAt ? r : r + 1;
+	}
+
+	public Task[] getTasks(){
+		return tasks;
+	}
+
+	public int getTaskCount(){
+		return numTasks;
+	}
+
+	public int[] getContractors(){
+		return contractors;
+	}
+
+	public int getContractorCount(){
+		return numContractors;
+	}
+
+	/**
+	 * @return the bid matrix, cost[c*getTaskCount() + t] the utility of the
+	 * contractor c for the task t, TaskAllocator.NO_BID if none
+	 */
+	public double[] getCost(){
+		return cost;
+	}
+}
@@ -0,0 +1,88 @@
+package sim.app.firecontrol;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Append-only CSV file of RunResults.
+ * The file is opened once and kept open across the runs, the records are
+ * buffered and pushed to the file every flushEvery records and on close.
+ * The header is written only when the file is new, so that many sessions can
+ * append to the same file.
+ * Writers are serialized on the sink, hence it can be shared among threads.
+ *
+ * @see RunResult
+ */
+public class CsvResultSink implements ResultSink{
+
+	private static CsvResultSink defaultSink;
+
+	private final Writer writer;
+	private final int flushEvery;
+	private int pending;
+	private boolean closed;
+
+	public CsvResultSink(File file) throws IOException{
+		this(file, 64);
+	}
+
+	public CsvResultSink(File file, int flushEvery) throws IOException{
+		boolean isNew = !file.exists() || file.length() == 0;
+		this.writer = new BufferedWriter(new FileWriter(file, true), 1 << 16);
+		this.flushEvery = flushEvery;
+		if(isNew){
+			writer.write(RunResult.HEADER);
+			writer.write('\n');
+		}
+	}
+
+	/**
+	 * @return the sink shared by the runs that do not set their own, @see Ignite.resultSink
+	 * It appends to results.csv in user.dir and it is closed when the JVM exits.
+	 */
+	public static synchronized CsvResultSink getDefault() throws IOException{
+		if(defaultSink == null){
+			CsvResultSink sink = new CsvResultSink(new File(System.getProperty("user.dir"), "results.csv"));
+			Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+				try {
+					sink.close();
+				} catch (IOException e) {
+					System.err.println("Exception in CsvResultSink.close() " + e.toString());
+				}
+			}));
+			defaultSink = sink;
+		}
+		return defaultSink;
+	}
+
+	@Override
+	public synchronized void write(RunResult result) throws IOException{
+		if(closed){
+			throw new IOException("CsvResultSink is closed");
+		}
+		writer.write(result.toCsv());
+		writer.write('\n');
+		if(++pending >= flushEvery){
+			flush();
+		}
+	}
+
+	@Override
+	public synchronized void flush() throws IOException{
+		if(!closed){
+			writer.flush();
+			pending = 0;
+		}
+	}
+
+	@Override
+	public synchronized void close() throws IOException{
+		if(!closed){
+			writer.close();
+			closed = true;
+		}
+	}
+}
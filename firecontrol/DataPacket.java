@@ -1,46 +1,75 @@
 /*
  * Simple structure for a data packet.
- * 
+ *
  * @author dario albani
  * @mail dario.albani@istc.cnr.it
  */
 
 package sim.app.firecontrol;
-import java.util.LinkedList;
-import java.sql.Timestamp;
-import java.util.UUID;  
 
+/**
+ * A packet of the Contract Net Protocol, a single flat object: the header
+ * (id, sender, step) and the payload of each type of packet:
+ * - BID, a manager announces a task: task
+ * - PROPOSE, a worker answers a bid: resPacketID (the bid), utility
+ * - AWARD, a manager assigns a task: task
+ * - ACCEPT, REFUSE, a worker answers an award: resPacketID (the award), task
+ * The fields of the other types are left unset (-1, null or NaN). Only the
+ * factory of each type builds a packet outside the package, so the payload
+ * matches the type, but the compiler does not check it: a class per type
+ * would, at the cost of a dispatch on each read and of more classes for the
+ * mailboxes and the checkpoint to deal with.
+ *
+ * The ids are a sequence of each sender (@see UAV.nextPacketID), so a packet
+ * is identified by its sender and its id, and the replies are matched by
+ * the receiver among the packets it sent. The timestamp is the step of the
+ * simulation, so that the packets of a run do not depend on the wall clock.
+ */
 public class DataPacket{
 
-	public class Header{
-		public UUID packetID;
-		public int senderID;
-		public Timestamp timestamp; 
-
-		public Header(UUID packetID, int senderID, Timestamp timestamp){
-			this.packetID = packetID;
-			this.senderID = senderID;
-			this.timestamp = timestamp;
-		}
-	};
-
-	public class Payload{
-		public DataPacketType type;
-		public UUID resPacketID;
-		public Object object;
-
-		public Payload(DataPacketType type, UUID resPacketID, Object object){
-			this.type = type;
-			this.resPacketID = resPacketID;
-			this.object = object;
-		}
-	};
-
-	public Header header;
-	public Payload payload;
-
-	public DataPacket(UUID packetID, int senderID, Timestamp timestamp, DataPacketType type, UUID resPacketID, Object object){
-		this.header = new Header(packetID, senderID, timestamp);
-		this.payload = new Payload(type, resPacketID, object);
+	/* header */
+	public final long packetID; //in the sequence of the sender
+	public final int senderID;
+	public final long timestamp; //step when the packet has been sent
+
+	/* payload */
+	public final DataPacketType type;
+	public final long resPacketID; //the packet answered, -1 if none
+	public final Task task; //null for PROPOSE
+	public final double utility; //PROPOSE only, NaN otherwise
+
+	DataPacket(long packetID, int senderID, long timestamp, DataPacketType type, long resPacketID, Task task, double utility){
+		this.packetID = packetID;
+		this.senderID = senderID;
+		this.timestamp = timestamp;
+		this.type = type;
+		this.resPacketID = resPacketID;
+		this.task = task;
+		this.utility = utility;
+	}
+
+	public static DataPacket bid(long packetID, int senderID, long timestamp, Task task){
+		return new DataPacket(packetID, senderID, timestamp, DataPacketType.BID, -1, task, Double.NaN);
+	}
+
+	public static DataPacket propose(long packetID, int senderID, long timestamp, DataPacket bid, double utility){
+		return new DataPacket(packetID, senderID, timestamp, DataPacketType.PROPOSE, bid.packetID, null, utility);
+	}
+
+	public static DataPacket award(long packetID, int senderID, long timestamp, Task task){
+		return new DataPacket(packetID, senderID, timestamp, DataPacketType.AWARD, -1, task, Double.NaN);
+	}
+
+	/**
+	 * ACCEPT or REFUSE the given award
+	 */
+	public static DataPacket reply(long packetID, int senderID, long timestamp, DataPacket award, boolean accepted){
+		return new DataPacket(packetID, senderID, timestamp, accepted ? DataPacketType.ACCEPT : DataPacketType.REFUSE,
+				award.packetID, award.task, Double.NaN);
+	}
+
+	@Override
+	public String toString(){
+		return type + " " + senderID + ":" + packetID + "@" + timestamp;
 	}
 }
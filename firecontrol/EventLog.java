@@ -0,0 +1,221 @@
+package sim.app.firecontrol;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import sim.engine.SimState;
+import sim.engine.Steppable;
+import sim.util.Double3D;
+
+/**
+ * Compact binary log of what changes in a run, to be played back by Replay
+ * without running the fire or the agents.
+ * The log starts with the state of the run when the recording begins (the
+ * type plane, the UAVs and the tasks), then holds the changes of each step:
+ * - the changes of type of the cells, as they happen (@see Forest.setType)
+ * - every packet sent, as it is sent (@see UAV.sendDataMany, UAV.sendDataOne)
+ * - the changes of position, target, action and role of the UAVs, and the
+ *   tasks created, moved or retired, compared with the end of the previous step
+ * - the end of the step
+ * Only the changes are written, with variable length ints, so that a step
+ * where nothing happens costs a couple of bytes.
+ *
+ * Record with IgniteConfig.eventLog, the log is closed by Ignite.finish().
+ *
+ * @see Replay
+ */
+public class EventLog implements Steppable{
+	private static final long serialVersionUID = 1L;
+
+	static final int MAGIC = 0x4643454C; //FCEL
+	static final int VERSION = 4;
+
+	/* records, each one starts with its tag */
+	static final byte STEP_END = 0;
+	static final byte CELL = 1;
+	static final byte UAV_POSITION = 2;
+	static final byte UAV_TARGET = 3;
+	static final byte UAV_ACTION = 4;
+	static final byte UAV_ROLE = 5;
+	static final byte TASK = 6;
+	static final byte TASK_RETIRED = 7;
+	static final byte PACKET = 8;
+
+	private final DataOutputStream out;
+	private final Forest forest;
+
+	/* what has been written so far, to write only the changes */
+	private final float[] positions;
+	private final Double3D[] targets;
+	private final AgentAction[] actions;
+	private final UAVRole[] roles;
+	private Map<Integer, float[]> tasks = new HashMap<>();
+	private Map<Integer, float[]> seen = new HashMap<>();
+	private long lastStep;
+
+	/**
+	 * Start to record the given run from its current state
+	 */
+	public EventLog(Ignite ignite, File file) throws IOException{
+		this.out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16));
+		this.forest = ignite.forest;
+		int uavs = ignite.UAVs.numObjs;
+		this.positions = new float[3*uavs];
+		this.targets = new Double3D[uavs];
+		this.actions = new AgentAction[uavs];
+		this.roles = new UAVRole[uavs];
+
+		out.writeInt(MAGIC);
+		out.writeInt(VERSION);
+		out.writeInt(forest.width);
+		out.writeInt(forest.height);
+		out.writeInt(ignite.config.depth);
+		out.writeInt(uavs);
+		out.writeLong(ignite.schedule.getSteps());
+		out.write(forest.type);
+		//the first step holds the whole state of the UAVs and of the tasks
+		Arrays.fill(positions, Float.NaN);
+		lastStep = ignite.schedule.getSteps() - 1;
+		endStep(ignite, ignite.schedule.getSteps());
+		forest.log = this;
+	}
+
+	@Override
+	public void step(SimState state){
+		Ignite ignite = (Ignite) state;
+		//the current step is not counted yet
+		try {
+			endStep(ignite, ignite.schedule.getSteps() + 1);
+		} catch (IOException e) {
+			System.err.println("Exception in EventLog.step() " + e.toString());
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Write the end of the last step, if not written yet, and close the log
+	 */
+	public void close(Ignite ignite) throws IOException{
+		forest.log = null;
+		if(ignite.schedule.getSteps() > lastStep){
+			endStep(ignite, ignite.schedule.getSteps());
+		}
+		out.close();
+	}
+
+	/**
+	 * A cell changed type, called by Forest.setType
+	 */
+	void cell(int index, byte type){
+		try {
+			out.writeByte(CELL);
+			writeVarInt(out, index);
+			out.writeByte(type);
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * A packet has been sent from a UAV to another one
+	 */
+	void packet(int sender, int receiver, DataPacket packet){
+		try {
+			out.writeByte(PACKET);
+			writeVarInt(out, sender);
+			writeVarInt(out, receiver);
+			out.writeByte(packet.type.ordinal());
+			writeVarInt(out, packet.task != null ? packet.task.id + 1 : 0);
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private void endStep(Ignite ignite, long step) throws IOException{
+		//the positions of the UAVs on the way, @see TravelMode.SCHEDULED
+		ignite.syncUAVs();
+		for(int i=0; i<ignite.UAVs.numObjs; i++){
+			UAV uav = (UAV) ignite.UAVs.objs[i];
+			if((float) uav.x != positions[3*i] || (float) uav.y != positions[3*i+1] || (float) uav.z != positions[3*i+2]){
+				positions[3*i] = (float) uav.x;
+				positions[3*i+1] = (float) uav.y;
+				positions[3*i+2] = (float) uav.z;
+				out.writeByte(UAV_POSITION);
+				writeVarInt(out, i);
+				out.writeFloat(positions[3*i]);
+				out.writeFloat(positions[3*i+1]);
+				out.writeFloat(positions[3*i+2]);
+			}
+			if(uav.target == null ? targets[i] != null : !uav.target.equals(targets[i])){
+				targets[i] = uav.target;
+				out.writeByte(UAV_TARGET);
+				writeVarInt(out, i);
+				out.writeBoolean(uav.target != null);
+				if(uav.target != null){
+					out.writeFloat((float) uav.target.x);
+					out.writeFloat((float) uav.target.y);
+					out.writeFloat((float) uav.target.z);
+				}
+			}
+			if(uav.action != actions[i]){
+				actions[i] = uav.action;
+				out.writeByte(UAV_ACTION);
+				writeVarInt(out, i);
+				out.writeByte(uav.action == null ? -1 : uav.action.ordinal());
+			}
+			if(uav.role != roles[i]){
+				roles[i] = uav.role;
+				out.writeByte(UAV_ROLE);
+				writeVarInt(out, i);
+				out.writeByte(uav.role.ordinal());
+			}
+		}
+
+		//the live tasks, swapping the maps to find the retired ones
+		Map<Integer, float[]> live = seen;
+		live.clear();
+		for(Task task : ignite.tasks){
+			float[] last = tasks.remove(task.id);
+			if(last == null || last[0] != task.centroid.x || last[1] != task.centroid.y || last[2] != (float) task.radius){
+				last = new float[]{task.centroid.x, task.centroid.y, (float) task.radius};
+				out.writeByte(TASK);
+				writeVarInt(out, task.id);
+				writeVarInt(out, task.centroid.x);
+				writeVarInt(out, task.centroid.y);
+				out.writeFloat((float) task.radius);
+			}
+			live.put(task.id, last);
+		}
+		for(int id : tasks.keySet()){
+			out.writeByte(TASK_RETIRED);
+			writeVarInt(out, id);
+		}
+		seen = tasks;
+		tasks = live;
+
+		out.writeByte(STEP_END);
+		writeVarLong(out, step);
+		lastStep = step;
+	}
+
+	/**
+	 * Unsigned LEB128, 7 bits per byte
+	 */
+	static void writeVarInt(DataOutputStream out, int value) throws IOException{
+		writeVarLong(out, value & 0xFFFFFFFFL);
+	}
+
+	static void writeVarLong(DataOutputStream out, long value) throws IOException{
+		while((value & ~0x7FL) != 0){
+			out.writeByte((int) (value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		out.writeByte((int) value);
+	}
+}
@@ -0,0 +1,504 @@
+package sim.app.firecontrol;
+
+import java.util.BitSet;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.DoubleSupplier;
+
+import sim.engine.SimState;
+import sim.engine.Steppable;
+import sim.util.IntBag;
+
+/**
+ * Compute the dynamics of the whole forest in a single step.
+ * The rules are the same that used to be implemented by each WorldCell:
+ * - a fire cell loses status and enhances the fire status of its normal neighbors
+ * - a fire cell whose status drops below the threshold becomes burned
+ * - a normal cell whose status drops below the threshold takes fire
+ * - a normal cell can take fire by itself every 500 steps
+ *
+ * Instead of visiting every cell of the forest, only the active cells are
+ * considered. The status of a normal cell changes only when a fire enhances it,
+ * so the threshold check is done right there and the cell is queued to take fire
+ * at the end of the step. Hence the cost of a step scales with the perimeter of
+ * the fires and not with the size of the forest.
+ *
+ * The outcome of a seed is not the one of the WorldCells, the two only match
+ * statistically. MASON stepped the cells in an order shuffled on each step with
+ * the random generator of the simulation, and the cells drew from that same
+ * generator as they were visited: replaying that order means shuffling and
+ * visiting the whole forest on every step, which is the cost removed here.
+ * Besides, a normal cell below the threshold now takes fire at the end of the
+ * step that pushed it there, not when it is visited next, and self-ignition
+ * draws the gaps between candidates rather than a number per cell, so the
+ * random numbers are consumed in a different order.
+ *
+ * Three propagation modes are available (@see PropagationMode). In the TILED mode
+ * the tiles touched by a fire are processed in parallel on a ForkJoinPool, the
+ * common pool shared by all the runs of the JVM unless the run asks for a pool
+ * of its own (@see IgniteConfig.propagationThreads). Every cell of a tile pulls
+ * its own update: a fire cell burns, a normal cell is enhanced once if any of its
+ * neighbors is on fire. During this phase the type plane is
+ * read-only and each tile writes only the status of its own cells, while the
+ * changes of type are buffered per tile and committed in tile order once all the
+ * tiles are done. Each tile draws from a stream seeded by the seed of the
+ * simulation, the step and the tile, so the outcome does not depend on the number
+ * of threads. The VECTOR mode follows the same rules a row at a time, with the
+ * Vector API (@see RowKernel).
+ *
+ * @see Forest
+ * @see WorldCell
+ */
+public class FireDynamics implements Steppable{
+	private static final long serialVersionUID = 1L;
+
+	private final PropagationMode mode;
+
+	/* cells on fire, extinguished cells are dropped lazily on the next step */
+	private IntBag burning;
+	/* normal cells whose status dropped below the threshold in this step */
+	private IntBag igniting;
+	/* cells enhanced in this step, used to reset the flags without a full sweep */
+	private IntBag enhanced;
+
+	/* TILED mode only */
+	private final int tileSize;
+	private final int tilesX;
+	private final int tilesY;
+	private final int threads; //0 to use the common pool
+	private transient ForkJoinPool pool;
+	private BitSet activeTiles;
+	private IntBag[] burnedByTile;
+	private IntBag[] ignitingByTile;
+
+	/* VECTOR mode only */
+	private RowKernel kernel;
+
+	/* changes of type in the current step, @see SimEvents.Propagation */
+	private int ignited;
+	private int burnedOut;
+	private int tiles;
+
+	/**
+	 * Constructor
+	 * Collect the cells that are already on fire in the forest of the simulation.
+	 */
+	public FireDynamics(Ignite ignite){
+		Forest forest = ignite.forest;
+		this.mode = ignite.config.propagationMode;
+		this.burning = new IntBag();
+		this.igniting = new IntBag();
+		this.enhanced = new IntBag();
+
+		for(int index=0; index<forest.size(); index++){
+			if(forest.is(index, CellType.FIRE)){
+				burning.add(index);
+			}
+		}
+
+		this.tileSize = ignite.config.tileSize;
+		this.tilesX = (forest.width + tileSize - 1) / tileSize;
+		this.tilesY = (forest.height + tileSize - 1) / tileSize;
+		this.threads = ignite.config.propagationThreads;
+		if(mode == PropagationMode.TILED){
+			this.activeTiles = new BitSet(tilesX*tilesY);
+			this.burnedByTile = new IntBag[tilesX*tilesY];
+			this.ignitingByTile = new IntBag[tilesX*tilesY];
+		} else if(mode == PropagationMode.VECTOR){
+			//a single buffer for the whole forest
+			this.burnedByTile = new IntBag[]{new IntBag()};
+			this.ignitingByTile = new IntBag[]{new IntBag()};
+		}
+	}
+
+	/**
+	 * @return the number of cells the next step is going to visit
+	 */
+	public int getActiveCells(){
+		return burning.numObjs;
+	}
+
+	/**
+	 * @return the cells on fire, in the order they are visited, @see Checkpoint
+	 */
+	int[] getBurning(){
+		return java.util.Arrays.copyOf(burning.objs, burning.numObjs);
+	}
+
+	/**
+	 * Replace the cells on fire, e.g. with the ones of a checkpoint
+	 */
+	void setBurning(int[] cells){
+		burning.clear();
+		for(int index : cells){
+			burning.add(index);
+		}
+	}
+
+	/**
+	 * Release the threads of the pool of the run, if any; the common pool is
+	 * left to the other runs.
+	 */
+	public void shutdown(){
+		if(pool != null && pool != ForkJoinPool.commonPool()){
+			pool.shutdown();
+		}
+		pool = null;
+	}
+
+	@Override
+	public void step(SimState state) {
+		Ignite ignite = (Ignite) state;
+		SimEvents.Propagation event = new SimEvents.Propagation();
+		event.begin();
+		int activeCells = burning.numObjs;
+		ignited = 0;
+		burnedOut = 0;
+		tiles = 0;
+
+		if(mode == PropagationMode.TILED){
+			stepTiled(ignite, ignite.forest);
+		} else if(mode == PropagationMode.VECTOR){
+			stepVector(ignite, ignite.forest);
+		} else {
+			stepSequential(ignite, ignite.forest);
+		}
+
+		//and there is a random probably that a cell will take fire by itself
+		if(ignite.stats.selfIgniteLeft > 0 &&
+				ignite.schedule.getSteps()!=0 &&
+				ignite.schedule.getSteps()%500==0){
+			if(mode != PropagationMode.SEQUENTIAL){
+				SplittableRandom random = new SplittableRandom(streamSeed(ignite, -1));
+				selfIgnite(ignite, ignite.forest, random::nextDouble);
+			} else {
+				selfIgnite(ignite, ignite.forest, ignite.random::nextDouble);
+			}
+		}
+
+		event.record(mode, activeCells, tiles, ignited, burnedOut);
+
+		//split the tasks disconnected in this step
+		ignite.taskTracker.refresh();
+	}
+
+	/**
+	 * Reference implementation, visit the fires one by one.
+	 */
+	private void stepSequential(Ignite ignite, Forest forest){
+		//avoid to enhance the fire status of a cell more than once per step
+		for(int i=0; i<enhanced.numObjs; i++){
+			forest.enhanced.clear(enhanced.objs[i]);
+		}
+		enhanced.clear();
+
+		//update the fires and compact the set, keeping the order of the cells
+		int alive = 0;
+		for(int i=0; i<burning.numObjs; i++){
+			int index = burning.objs[i];
+			//extinguished by an UAV since last step
+			if(!forest.is(index, CellType.FIRE)){
+				continue;
+			}
+			if(burn(ignite, forest, index)){
+				burning.objs[alive++] = index;
+			}
+		}
+		burning.numObjs = alive;
+
+		//normal cells taking fire
+		for(int i=0; i<igniting.numObjs; i++){
+			ignite(ignite, forest, igniting.objs[i]);
+		}
+		igniting.clear();
+	}
+
+	/**
+	 * Update the status of a fire cell and propagate the fire to its neighbors
+	 * @return true, if the cell is still on fire
+	 */
+	private boolean burn(Ignite ignite, Forest forest, int index){
+		IgniteConfig config = ignite.config;
+		int x = forest.xOf(index);
+		int y = forest.yOf(index);
+
+		//update the status
+		forest.status[index] -= config.fireStatusMultiplier*forest.status[index]*ignite.gaussianPDF(0, ignite.random.nextDouble(), 0.2);
+
+		//propagate fire to neighbors
+		for(int i=-1; i<=1; i++){
+			for(int j=-1; j<=1; j++){
+				if(forest.isInBounds(x+i, y+j)){
+					int neighbor = forest.index(x+i, y+j);
+					if(forest.is(neighbor, CellType.NORMAL) && !forest.enhanced.get(neighbor)){
+						forest.status[neighbor] -= config.normalStatusMultiplier*ignite.gaussianPDF(0, 2*ignite.random.nextDouble(), 0.2);
+						forest.enhanced.set(neighbor);
+						enhanced.add(neighbor);
+						//check status
+						if(forest.status[neighbor] < config.statusThreshold){
+							igniting.add(neighbor);
+						}
+					}
+				}
+			}
+		}
+		//update own status
+		if(forest.status[index]<config.statusThreshold){
+			burnOut(ignite, forest, index);
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Parallel implementation, process the tiles touched by the fires.
+	 */
+	private void stepTiled(Ignite ignite, Forest forest){
+		//drop the extinguished cells and mark the tiles touched by the fires,
+		//including the tiles of the neighbors of the fires on the border of a tile
+		activeTiles.clear();
+		int alive = 0;
+		for(int i=0; i<burning.numObjs; i++){
+			int index = burning.objs[i];
+			if(!forest.is(index, CellType.FIRE)){
+				continue;
+			}
+			burning.objs[alive++] = index;
+			int x = forest.xOf(index);
+			int y = forest.yOf(index);
+			for(int tx=Math.max(x-1, 0)/tileSize; tx<=Math.min(x+1, forest.width-1)/tileSize; tx++){
+				for(int ty=Math.max(y-1, 0)/tileSize; ty<=Math.min(y+1, forest.height-1)/tileSize; ty++){
+					activeTiles.set(ty*tilesX + tx);
+				}
+			}
+		}
+		burning.numObjs = alive;
+
+		int[] tiles = activeTiles.stream().toArray();
+		this.tiles = tiles.length;
+		if(tiles.length == 0){
+			return;
+		}
+
+		//compute the updates in parallel
+		if(pool == null){
+			pool = threads > 0 ? new ForkJoinPool(threads) : ForkJoinPool.commonPool();
+		}
+		for(int tile : tiles){
+			if(burnedByTile[tile] == null){
+				burnedByTile[tile] = new IntBag();
+				ignitingByTile[tile] = new IntBag();
+			}
+		}
+		pool.invoke(new TileAction(ignite, tiles, 0, tiles.length));
+
+		//commit the changes of type in tile order
+		for(int tile : tiles){
+			IntBag burned = burnedByTile[tile];
+			for(int i=0; i<burned.numObjs; i++){
+				burnOut(ignite, forest, burned.objs[i]);
+			}
+			burned.clear();
+		}
+		//compact the set once more, removing the burned cells
+		alive = 0;
+		for(int i=0; i<burning.numObjs; i++){
+			if(forest.is(burning.objs[i], CellType.FIRE)){
+				burning.objs[alive++] = burning.objs[i];
+			}
+		}
+		burning.numObjs = alive;
+		for(int tile : tiles){
+			IntBag ignited = ignitingByTile[tile];
+			for(int i=0; i<ignited.numObjs; i++){
+				ignite(ignite, forest, ignited.objs[i]);
+			}
+			ignited.clear();
+		}
+	}
+
+	/**
+	 * Vectorized implementation, process the rows touched by the fires.
+	 * @see RowKernel
+	 */
+	private void stepVector(Ignite ignite, Forest forest){
+		//drop the extinguished cells
+		int alive = 0;
+		for(int i=0; i<burning.numObjs; i++){
+			if(forest.is(burning.objs[i], CellType.FIRE)){
+				burning.objs[alive++] = burning.objs[i];
+			}
+		}
+		burning.numObjs = alive;
+
+		if(kernel == null){
+			kernel = RowKernel.load(forest);
+		}
+		IntBag burned = burnedByTile[0];
+		IntBag ignited = ignitingByTile[0];
+		this.tiles = kernel.process(ignite, burning, burned, ignited);
+
+		//commit the changes of type in row order
+		for(int i=0; i<burned.numObjs; i++){
+			burnOut(ignite, forest, burned.objs[i]);
+		}
+		burned.clear();
+		alive = 0;
+		for(int i=0; i<burning.numObjs; i++){
+			if(forest.is(burning.objs[i], CellType.FIRE)){
+				burning.objs[alive++] = burning.objs[i];
+			}
+		}
+		burning.numObjs = alive;
+		for(int i=0; i<ignited.numObjs; i++){
+			ignite(ignite, forest, ignited.objs[i]);
+		}
+		ignited.clear();
+	}
+
+	/**
+	 * Pull the update of each cell of the given tile.
+	 * Reads the type plane, writes only the status of the cells of the tile.
+	 */
+	private void processTile(Ignite ignite, int tile){
+		Forest forest = ignite.forest;
+		IgniteConfig config = ignite.config;
+		SplittableRandom random = new SplittableRandom(streamSeed(ignite, tile));
+		IntBag burned = burnedByTile[tile];
+		IntBag ignited = ignitingByTile[tile];
+
+		int fromX = (tile % tilesX) * tileSize;
+		int fromY = (tile / tilesX) * tileSize;
+		int toX = Math.min(fromX + tileSize, forest.width);
+		int toY = Math.min(fromY + tileSize, forest.height);
+
+		for(int y=fromY; y<toY; y++){
+			for(int x=fromX; x<toX; x++){
+				int index = forest.index(x, y);
+				if(forest.is(index, CellType.FIRE)){
+					forest.status[index] -= config.fireStatusMultiplier*forest.status[index]*ignite.gaussianPDF(0, random.nextDouble(), 0.2);
+					if(forest.status[index] < config.statusThreshold){
+						burned.add(index);
+					}
+				} else if(forest.is(index, CellType.NORMAL) && isNearFire(forest, x, y)){
+					forest.status[index] -= config.normalStatusMultiplier*ignite.gaussianPDF(0, 2*random.nextDouble(), 0.2);
+					if(forest.status[index] < config.statusThreshold){
+						ignited.add(index);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return true, if any of the neighbors of the given location is on fire
+	 */
+	private boolean isNearFire(Forest forest, int x, int y){
+		for(int i=-1; i<=1; i++){
+			for(int j=-1; j<=1; j++){
+				if((i != 0 || j != 0) && forest.isInBounds(x+i, y+j) && forest.is(forest.index(x+i, y+j), CellType.FIRE)){
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @return the seed of the random stream of a tile (a row in VECTOR mode) in the current step
+	 */
+	static long streamSeed(Ignite ignite, int tile){
+		long h = mix(ignite.seed() ^ (ignite.schedule.getSteps() * 0x9E3779B97F4A7C15L));
+		return mix(h ^ (tile * 0xC2B2AE3D27D4EB4FL));
+	}
+
+	private static long mix(long z){
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+
+	/**
+	 * A fire cell becomes burned
+	 */
+	private void burnOut(Ignite ignite, Forest forest, int index){
+		forest.setType(index, CellType.BURNED);
+		ignite.stats.cellsOnFire.decrement();
+		ignite.stats.cellsBurned.increment();
+		burnedOut++;
+		//there is nothing left to save, the cell leaves its task
+		ignite.taskTracker.notifyExtinguishedFire(index);
+	}
+
+	/**
+	 * A normal cell takes fire
+	 */
+	private void ignite(Ignite ignite, Forest forest, int index){
+		forest.setType(index, CellType.FIRE);
+		forest.status[index] = 1;
+		ignite.stats.cellsOnFire.increment();
+		burning.add(index);
+		ignited++;
+		//notify the tasks to let them compute the update
+		ignite.taskTracker.notifyNewFire(index);
+	}
+
+	/**
+	 * Each normal cell takes fire by itself with probability 1-selfIgniteThreshold,
+	 * until the budget of the run is over (@see IgniteStats.selfIgniteLeft).
+	 * Rather than drawing a number for every cell, the distance to the next
+	 * candidate is drawn from the geometric distribution, so that only the
+	 * candidates are visited.
+	 */
+	private void selfIgnite(Ignite ignite, Forest forest, DoubleSupplier random){
+		IgniteConfig config = ignite.config;
+		double logq = Math.log(config.selfIgniteThreshold);
+		long index = -1;
+		while(ignite.stats.selfIgniteLeft > 0){
+			index += 1 + (long) Math.floor(Math.log(1 - random.getAsDouble())/logq);
+			if(index >= forest.size()){
+				break;
+			}
+			int candidate = (int) index;
+			if(forest.is(candidate, CellType.NORMAL) && forest.status[candidate] >= config.statusThreshold){
+				forest.setType(candidate, CellType.FIRE);
+				forest.status[candidate] = 1;
+				ignite.stats.cellsOnFire.increment();
+				burning.add(candidate);
+				ignited++;
+				ignite.stats.selfIgniteLeft--;
+				//generate a new task, or join the one of the neighbors
+				ignite.taskTracker.notifyNewFire(candidate);
+			}
+		}
+	}
+
+	/**
+	 * Split the active tiles in halves until a single tile is left.
+	 */
+	private class TileAction extends RecursiveAction{
+		private static final long serialVersionUID = 1L;
+		private final Ignite ignite;
+		private final int[] tiles;
+		private final int from;
+		private final int to;
+
+		TileAction(Ignite ignite, int[] tiles, int from, int to){
+			this.ignite = ignite;
+			this.tiles = tiles;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute(){
+			if(to - from == 1){
+				processTile(ignite, tiles[from]);
+			} else {
+				int mid = (from + to) >>> 1;
+				invokeAll(new TileAction(ignite, tiles, from, mid), new TileAction(ignite, tiles, mid, to));
+			}
+		}
+	}
+}
@@ -0,0 +1,236 @@
+package sim.app.firecontrol;
+
+/**
+ * The cells on fire of a task, to find the one nearest to a UAV without
+ * scanning the task, @see UAV.selectCell.
+ * The forest is split in buckets of 8x8 cells, a long for each bucket with a
+ * bit for each cell, and the buckets in blocks of 8x8 buckets, a long for each
+ * block with a bit for each bucket that has cells. A block is only allocated
+ * when the task reaches it, and all of them are dropped when the task has no
+ * cells left.
+ * The search visits the blocks in rings around the block of the UAV, within
+ * the bounding box of the blocks allocated, and stops at the first ring whose
+ * nearest point is farther than the best cell found so far. In a block it goes
+ * down to the buckets and to the cells, skipping a bucket when even its
+ * nearest point is farther. A query visits the rings up to the nearest free
+ * cell and the cells of a few buckets, not the whole task. add and remove
+ * are O(1).
+ *
+ * Only the cells within the radius of the task are returned, and the cells
+ * claimed by other UAVs (@see Forest.getClaim) are skipped, so that two UAVs
+ * do not head for the same cell. Among the cells at the same distance the one
+ * with the lowest index wins, whatever the order the blocks were allocated in.
+ */
+public class FireFrontier implements java.io.Serializable{
+	private static final long serialVersionUID = 1L;
+
+	/* side of a bucket in cells and of a block in buckets */
+	private static final int BUCKET = 8;
+	private static final int BLOCK = BUCKET * BUCKET; //in cells
+	private static final int SHIFT = 3;
+
+	private final Forest forest;
+	private final int blocksX;
+	private final int blocksY;
+	/* the buckets of each block, null if the task never reached it */
+	private long[][] blocks;
+	/* the non empty buckets of each block */
+	private long[] masks;
+	/* bounding box of the blocks allocated, in blocks */
+	private int minBlockX;
+	private int maxBlockX;
+	private int minBlockY;
+	private int maxBlockY;
+	private int size;
+
+	public FireFrontier(Forest forest){
+		this.forest = forest;
+		this.blocksX = (forest.width + BLOCK - 1) / BLOCK;
+		this.blocksY = (forest.height + BLOCK - 1) / BLOCK;
+	}
+
+	public int size(){
+		return size;
+	}
+
+	/**
+	 * @return true, if the cell was not in the frontier
+	 */
+	public boolean add(int x, int y){
+		if(blocks == null){
+			blocks = new long[blocksX * blocksY][];
+			masks = new long[blocks.length];
+			minBlockX = blocksX;
+			maxBlockX = -1;
+			minBlockY = blocksY;
+			maxBlockY = -1;
+		}
+		int block = (y / BLOCK) * blocksX + x / BLOCK;
+		if(blocks[block] == null){
+			blocks[block] = new long[BUCKET * BUCKET];
+			minBlockX = Math.min(minBlockX, x / BLOCK);
+			maxBlockX = Math.max(maxBlockX, x / BLOCK);
+			minBlockY = Math.min(minBlockY, y / BLOCK);
+			maxBlockY = Math.max(maxBlockY, y / BLOCK);
+		}
+		int bucket = bucketOf(x, y);
+		long bit = 1L << cellOf(x, y);
+		if((blocks[block][bucket] & bit) != 0){
+			return false;
+		}
+		blocks[block][bucket] |= bit;
+		masks[block] |= 1L << bucket;
+		size++;
+		return true;
+	}
+
+	/**
+	 * @return true, if the cell was in the frontier
+	 */
+	public boolean remove(int x, int y){
+		if(blocks == null){
+			return false;
+		}
+		int block = (y / BLOCK) * blocksX + x / BLOCK;
+		int bucket = bucketOf(x, y);
+		long bit = 1L << cellOf(x, y);
+		if(blocks[block] == null || (blocks[block][bucket] & bit) == 0){
+			return false;
+		}
+		blocks[block][bucket] &= ~bit;
+		if(blocks[block][bucket] == 0){
+			masks[block] &= ~(1L << bucket);
+		}
+		if(--size == 0){
+			clear();
+		}
+		return true;
+	}
+
+	public void clear(){
+		blocks = null;
+		masks = null;
+		size = 0;
+	}
+
+	/**
+	 * Find the cell nearest to the given location, within the given circle and
+	 * not claimed by another UAV
+	 * @param uav, the id of the UAV asking, its own claim does not count
+	 * @param centerX, centerY, radius, the circle of the task
+	 * @return the index of the cell (@see Forest.index), -1 if none
+	 */
+	public int nearest(int x, int y, int uav, int centerX, int centerY, int radius){
+		if(size == 0){
+			return -1;
+		}
+		//the blocks that meet both the task and its circle
+		int fromX = Math.max(minBlockX, Math.max(0, centerX - radius) / BLOCK);
+		int toX = Math.min(maxBlockX, (centerX + radius) / BLOCK);
+		int fromY = Math.max(minBlockY, Math.max(0, centerY - radius) / BLOCK);
+		int toY = Math.min(maxBlockY, (centerY + radius) / BLOCK);
+		if(fromX > toX || fromY > toY){
+			return -1;
+		}
+		int blockX = x / BLOCK;
+		int blockY = y / BLOCK;
+		int rings = Math.max(Math.max(blockX - fromX, toX - blockX), Math.max(blockY - fromY, toY - blockY));
+
+		//distance and index of the best cell, in a long so that the lower index wins a tie
+		long best = Long.MAX_VALUE;
+		for(int ring=0; ring<=rings; ring++){
+			if(ring > 0){
+				//a cell of the ring is at least this far along x or y
+				long gap = (long) (ring - 1) * BLOCK + 1;
+				if(gap * gap > (best >>> 32)){
+					break;
+				}
+			}
+			for(int j=Math.max(fromY, blockY - ring); j<=Math.min(toY, blockY + ring); j++){
+				if(j == blockY - ring || j == blockY + ring){
+					//the whole row on the top and the bottom of the ring
+					for(int i=Math.max(fromX, blockX - ring); i<=Math.min(toX, blockX + ring); i++){
+						best = nearest(j * blocksX + i, x, y, uav, centerX, centerY, radius, best);
+					}
+				} else {
+					//the two ends of the row otherwise
+					if(blockX - ring >= fromX){
+						best = nearest(j * blocksX + blockX - ring, x, y, uav, centerX, centerY, radius, best);
+					}
+					if(blockX + ring <= toX){
+						best = nearest(j * blocksX + blockX + ring, x, y, uav, centerX, centerY, radius, best);
+					}
+				}
+			}
+		}
+		return best == Long.MAX_VALUE ? -1 : (int) best;
+	}
+
+	/**
+	 * The search of nearest in a block
+	 * @param best, the distance and the index of the best cell so far
+	 * @return the best cell, the given one if none of the block is better
+	 */
+	private long nearest(int block, int x, int y, int uav, int centerX, int centerY, int radius, long best){
+		if(blocks[block] == null || masks[block] == 0){
+			return best;
+		}
+		long radius2 = (long) radius * radius;
+		int blockX = (block % blocksX) * BLOCK;
+		int blockY = (block / blocksX) * BLOCK;
+		if(distance(x, y, blockX, blockY, BLOCK) > (best >>> 32)){
+			return best;
+		}
+		for(long mask = masks[block]; mask != 0; mask &= mask - 1){
+			int bucket = Long.numberOfTrailingZeros(mask);
+			int bucketX = blockX + (bucket & (BUCKET - 1)) * BUCKET;
+			int bucketY = blockY + (bucket >> SHIFT) * BUCKET;
+			if(distance(x, y, bucketX, bucketY, BUCKET) > (best >>> 32)
+					|| distance(centerX, centerY, bucketX, bucketY, BUCKET) > radius2){
+				continue;
+			}
+			for(long cells = blocks[block][bucket]; cells != 0; cells &= cells - 1){
+				int cell = Long.numberOfTrailingZeros(cells);
+				int cellX = bucketX + (cell & (BUCKET - 1));
+				int cellY = bucketY + (cell >> SHIFT);
+				int index = forest.index(cellX, cellY);
+				long dx = cellX - x;
+				long dy = cellY - y;
+				long d = (dx*dx + dy*dy) << 32 | index;
+				if(d < best){
+					long cx = cellX - centerX;
+					long cy = cellY - centerY;
+					int claim = forest.getClaim(index);
+					if(cx*cx + cy*cy <= radius2 && (claim < 0 || claim == uav)){
+						best = d;
+					}
+				}
+			}
+		}
+		return best;
+	}
+
+	/**
+	 * @return the squared distance from the given location to the nearest
+	 * cell of the square of the given side
+	 */
+	private static long distance(int x, int y, int fromX, int fromY, int side){
+		long dx = Math.max(0, Math.max(fromX - x, x - (fromX + side - 1)));
+		long dy = Math.max(0, Math.max(fromY - y, y - (fromY + side - 1)));
+		return dx*dx + dy*dy;
+	}
+
+	/**
+	 * @return the bucket of the cell in its block
+	 */
+	private static int bucketOf(int x, int y){
+		return ((y >> SHIFT) & (BUCKET - 1)) * BUCKET + ((x >> SHIFT) & (BUCKET - 1));
+	}
+
+	/**
+	 * @return the bit of the cell in its bucket
+	 */
+	private static int cellOf(int x, int y){
+		return (y & (BUCKET - 1)) * BUCKET + (x & (BUCKET - 1));
+	}
+}
@@ -0,0 +1,154 @@
+package sim.app.firecontrol;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Primitive backed storage for the forest discretization.
+ * Instead of keeping one WorldCell object per location, the whole state of the
+ * forest is stored in flat arrays (planes) indexed by y*width + x, so that each
+ * row of the forest is contiguous in memory:
+ * - type, the ordinal of the CellType of each cell
+ * - status, the status of each cell (see WorldCell for its meaning)
+ * - enhanced, set if the cell has already been enhanced by a fire in the current step
+ * - owner, the id of the Task the cell belongs to
+ * - claim, the id of the UAV heading to the cell, @see FireFrontier
+ *
+ * WorldCell objects are only lightweight views over this store.
+ *
+ * @see WorldCell
+ */
+public class Forest implements java.io.Serializable{
+	private static final long serialVersionUID = 1L;
+	private static final CellType[] TYPES = CellType.values();
+
+	public final int width;
+	public final int height;
+
+	/* the planes */
+	public final byte[] type;
+	public final double[] status;
+	public final BitSet enhanced;
+	public final int[] owner; //id of the task + 1, 0 if the cell is not part of a task, @see TaskTracker
+	public final int[] claim; //id of the UAV + 1, 0 if no UAV is heading to the cell, @see UAV.claim
+
+	transient EventLog log; //records the changes of type, null if the run is not recorded
+
+	/**
+	 * Constructor
+	 * Generate a forest of the given size where all the cells are NORMAL and in
+	 * good health (status = 1).
+	 */
+	public Forest(int width, int height){
+		this.width = width;
+		this.height = height;
+		this.type = new byte[width*height];
+		this.status = new double[width*height];
+		this.enhanced = new BitSet(width*height);
+		this.owner = new int[width*height];
+		this.claim = new int[width*height];
+
+		Arrays.fill(this.type, (byte) CellType.NORMAL.ordinal());
+		Arrays.fill(this.status, 1);
+	}
+
+	/**
+	 * @return the number of cells in the forest
+	 */
+	public int size(){
+		return this.type.length;
+	}
+
+	/**
+	 * @return the index of the cell at the given location in the planes
+	 */
+	public int index(int x, int y){
+		return y*width + x;
+	}
+
+	public int xOf(int index){
+		return index % width;
+	}
+
+	public int yOf(int index){
+		return index / width;
+	}
+
+	/**
+	 * Check if the given location is in forest bounds.
+	 */
+	public boolean isInBounds(int x, int y){
+		return x >= 0 && y >= 0 && x < width && y < height;
+	}
+
+	//GETTERS AND SETTERS
+	public CellType getType(int index){
+		return TYPES[this.type[index]];
+	}
+
+	public CellType getType(int x, int y){
+		return TYPES[this.type[index(x, y)]];
+	}
+
+	public void setType(int index, CellType type){
+		byte value = (byte) type.ordinal();
+		if(log != null && this.type[index] != value){
+			log.cell(index, value);
+		}
+		this.type[index] = value;
+	}
+
+	public void setType(int x, int y, CellType type){
+		setType(index(x, y), type);
+	}
+
+	/**
+	 * Cheaper than getType(index).equals(type), no lookup of the enum is needed.
+	 */
+	public boolean is(int index, CellType type){
+		return this.type[index] == type.ordinal();
+	}
+
+	/**
+	 * @return the id of the task the cell belongs to, -1 if none.
+	 * The task may have been merged into another one since, @see TaskTracker.find
+	 */
+	public int getOwner(int index){
+		return this.owner[index] - 1;
+	}
+
+	/**
+	 * Set the id of the task the cell belongs to, -1 if none
+	 */
+	public void setOwner(int index, int task){
+		this.owner[index] = task + 1;
+	}
+
+	/**
+	 * @return the id of the UAV heading to the cell, -1 if none
+	 */
+	public int getClaim(int index){
+		return this.claim[index] - 1;
+	}
+
+	/**
+	 * Set the id of the UAV heading to the cell, -1 if none
+	 */
+	public void setClaim(int index, int uav){
+		this.claim[index] = uav + 1;
+	}
+
+	/**
+	 * @return a view over the cell at the given location
+	 */
+	public WorldCell getCell(int x, int y){
+		return new WorldCell(this, x, y);
+	}
+
+	/**
+	 * @return a view over the cell at the given index
+	 */
+	public WorldCell getCell(int index){
+		return new WorldCell(this, xOf(index), yOf(index));
+	}
+}
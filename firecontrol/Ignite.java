@@ -15,12 +15,13 @@
 
 package sim.app.firecontrol;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.Collections;
 import java.util.ArrayList;
 import java.util.LinkedList;
 import sim.engine.SimState;
 import sim.field.continuous.Continuous3D;
-import sim.field.grid.ObjectGrid2D;
 import sim.util.Bag;
 import sim.util.Double3D;
 import sim.util.Int2D;
@@ -43,28 +44,37 @@ public class Ignite extends SimState{
 	 * - fire, there are some fires in the area and the cell requires attention
 	 * - burned, there is nothing left to save 
 	 * - water, the cell is part of a lake or a river
+	 * @see Forest
 	 */
-	public ObjectGrid2D forest;
+	public Forest forest;
 
 	/* simulation params */
 	public int numUAVs = 8; //number of mavs involved in the simulation
 	public Bag UAVs; // all the agents in the simulation. Bag size is numMavs 
-
-	public static int height = 60; //size of the forest
-	public static int width = 60; //size of the forest 
-	public static int depth = 50; //max altitude 
-
-	public static int cellsOnFire = 0;
-	public static int cellsBurned = 0;
-	public static int cellsOnWater = 0;
+	public UAVIndex uavIndex; // where the agents are, to find the ones in communication range
+	public ManagerElection election; // roles of the agents in the CNP
+	public TaskAllocator allocator; // assignment of the tasks by the managers, @see IgniteConfig.allocation
+
+	/* per run params and counters, never shared between runs */
+	public IgniteConfig config = new IgniteConfig();
+	public IgniteStats stats;
+	public ResultSink resultSink; //where the outcome of the run goes, null for CsvResultSink.getDefault()
+	public File restoreFrom; //checkpoint to resume at start, null to generate a new world, @see Checkpoint
+	public Replay replay; //event log to play back at start, in place of the simulation
+	public EventLog eventLog; //null if the run is not recorded, @see IgniteConfig.eventLog
+	private boolean resultRecorded;
+	private long syncedAt; //step the travelling UAVs have been brought to, @see syncUAVs
+	private long wakes; //steps of the UAVs scheduled so far, @see wake
 
 	public LinkedList<Task> tasks;
+	public TaskTracker taskTracker; //keeps the tasks in line with the fires
+	public FireDynamics fireDynamics;
 	
 	/**
 	 * Constructor
 	 */
 	public Ignite(long seed){
-		super(seed);
+		super(seed, new Checkpoint.RestorableSchedule());
 	}	
 
 	/**
@@ -72,13 +82,13 @@ public class Ignite extends SimState{
 	 * @param Double3D pos, the position to check 
 	 * @return true, if the UAV is in bound
 	 */
-	public static boolean isInBounds(Double3D pos){
+	public boolean isInBounds(Double3D pos){
 		return pos.x >= 0 
 				&& pos.y >= 0 
 				&& pos.z >= 1
-				&& pos.x < width 
-				&& pos.y < height
-				&& pos.z < depth;
+				&& pos.x < config.width 
+				&& pos.y < config.height
+				&& pos.z < config.depth;
 	}
 
 	/**
@@ -86,176 +96,187 @@ public class Ignite extends SimState{
 	 */
 	public void start(){
 		super.start();
-		//reset variables for job>1
-		cellsOnFire = 0;
-		cellsBurned = 0; 
-		WorldCell.selfIgniteMax = 0; 
-		
-		air = new Continuous3D(1, width, height, depth);
-		forest = new ObjectGrid2D(width, height);
-
-		//generate the world
-		//fill the world with trees
-		for(int w=0; w<width; w++){
-			for(int h=0; h<height; h++){
-				WorldCell cell = new WorldCell(w,h, CellType.NORMAL);
-				forest.field[w][h] = cell;
+		resultRecorded = false;
+		syncedAt = -1;
+		eventLog = null;
+		if(replay != null){
+			//nothing is simulated, the steps of the log are played
+			stats = null;
+			replay.attach(this);
+			schedule.scheduleRepeating(replay, 1, 1);
+			return;
+		}
+		if(restoreFrom != null){
+			//resume the world, the agents and the counters of the checkpoint
+			try {
+				Checkpoint.restore(this, restoreFrom);
+			} catch (IOException e) {
+				throw new RuntimeException("Cannot restore " + restoreFrom, e);
 			}
+		} else {
+			generate();
 		}
-
-		//generate lakes
-		int lakes = 2;
-		for(int l=0; l<lakes; l++){
-			Int2D lakeCenter;
-			Int2D nextLocation;
-			WorldCell cell;
-
-			//try to find a center for the lake
-			int maxTries = width*height;
-			do{
-				lakeCenter = new Int2D(random.nextInt(width), random.nextInt(height));
-				cell = ((WorldCell)forest.field[lakeCenter.x][lakeCenter.y]);
-				maxTries--;
-			}while(cell.type.equals(CellType.WATER) && maxTries>=0);
-
-			//break if not able to find a center after some time
-			if(maxTries < 0){
-				break;
+		uavIndex = new UAVIndex(UAVs, config);
+		election = new ManagerElection(UAVs);
+		allocator = new TaskAllocator(config.allocation);
+
+		//schedule the dynamics of all the cells
+		schedule.scheduleRepeating(fireDynamics, 2, 1);
+		//schedule the agents
+		if(config.travel == TravelMode.SCHEDULED){
+			//each UAV schedules its next step, a restored one may be travelling
+			ArrayList<UAV> order = new ArrayList<>();
+			for(Object uav : UAVs){
+				order.add((UAV) uav);
 			}
-
-			//place the center of the lake
-			cell = new WorldCell(lakeCenter.x, lakeCenter.y, CellType.WATER);
-			forest.field[lakeCenter.x][lakeCenter.y] = cell;
-
-			int radius = 1;
-			//start creating the lake
-			while(radius<=random.nextInt(width)+2 && radius<=random.nextInt(height)+2){
-				for(int i=-radius; i<=radius; i++){
-					for(int j=-radius; j<=radius; j++){
-						nextLocation = new Int2D(lakeCenter.x+i, lakeCenter.y+j); 
-						//place if not already present and if in bounds
-						if(nextLocation.x>=0 && nextLocation.y>=0 && 
-								nextLocation.x<width && nextLocation.y<height){
-							double p = gaussianPDF(Math.sqrt(i*i+j*j),(random.nextInt(3)-1)*random.nextDouble(), 3);
-
-							// if p is too low then there is no water
-							if(p > 0.25){
-								//place water
-								cell = new WorldCell(nextLocation.x, nextLocation.y, CellType.WATER);
-								forest.field[nextLocation.x][nextLocation.y] = cell;
-							}
-						}
-					}
-				}
-				radius++;
+			order.sort(Comparator.comparingLong(uav -> uav.wakeOrder));
+			wakes = 0;
+			for(UAV uav : order){
+				long wait = uav.isTravelling() ? Math.max(uav.arrivesAt - schedule.getSteps(), 0) : 0;
+				wake(uav, schedule.getTime() + 1 + wait);
+			}
+		} else {
+			for(Object uav : UAVs){
+				schedule.scheduleRepeating((UAV) uav, 1, 1);
 			}
 		}
 
-		//set the world on fire
-		//start with 3 fires and store their centroid in the tasks list
-		tasks = new LinkedList<>();
-		
-		//generate fires
-		int fires = 3;
-		for(int l=0; l<fires; l++){
-			Int2D fireCenter;
-			Int2D nextLocation;
-			WorldCell cell;
+		//schedule the fireContrller, used to check the end of the simulation
+		FireController fireController = new FireController();
+		schedule.scheduleRepeating(fireController,3,1);
 
-			//try to find a center for the fire
-			int maxTries = width*height;
-			do{
-				fireCenter = new Int2D(random.nextInt(width), random.nextInt(height));
-				cell = ((WorldCell)forest.field[fireCenter.x][fireCenter.y]);
-				maxTries--;
-			}while((cell.type.equals(CellType.FIRE) || cell.type.equals(CellType.WATER)) && maxTries>=0);
+		if(config.checkpointEvery > 0){
+			schedule.scheduleRepeating(new Checkpoint.Writer(), 4, 1);
+		}
 
-			//break if not able to find a center after some time
-			if(maxTries < 0){
-				break;
+		//record the changes, after all the other agents
+		if(config.eventLog != null){
+			try {
+				eventLog = new EventLog(this, new File(config.eventLog));
+			} catch (IOException e) {
+				throw new RuntimeException("Cannot record " + config.eventLog, e);
 			}
+			schedule.scheduleRepeating(eventLog, 5, 1);
+		}
+	}
 
-			//place the center of the fire
-			cell = new WorldCell(fireCenter.x, fireCenter.y, CellType.FIRE);
-			forest.field[fireCenter.x][fireCenter.y] = cell;
-			cellsOnFire++; 
-			//generate the task for global knowledge
-			Task t = new Task(new Int2D(fireCenter.x, fireCenter.y), 0);
-			t.addCell(cell);
-			tasks.add(t);
-			
-			int radius = 1;
-
-			//start creating the fire
-			LinkedList<Int2D> extractedLocation = new LinkedList<>();
-			extractedLocation.add(fireCenter);
-			while(radius<=random.nextInt(width)+2 && radius<=random.nextInt(height)+2){
-				for(int i=-radius; i<=radius; i++){
-					for(int j=-radius; j<=radius; j++){
-						nextLocation = new Int2D(fireCenter.x+i, fireCenter.y+j); 
-						//place if not already present and if in bounds
-						if(nextLocation.x>=0 && 
-								nextLocation.y>=0 && 
-								nextLocation.x<width && 
-								nextLocation.y<height &&
-								!extractedLocation.contains(nextLocation)){
-							double p = gaussianPDF(Math.sqrt(i*i+j*j),(random.nextInt(3)-1)*random.nextDouble(), 3);
-
-							// if p is too low then there is no fire
-							if(p > 0.85){
-								//place fire
-								cell = new WorldCell(nextLocation.x, nextLocation.y, CellType.FIRE);
-								forest.field[nextLocation.x][nextLocation.y] = cell;
-								cellsOnFire++;
-								//update the task
-								t.notifyNewFire(cell);
-								//avoid updating more than once
-								extractedLocation.add(nextLocation);
-							}
-						}
-					}
-				}
-				radius++;
+	/**
+	 * Bring the UAVs travelling to their target (@see TravelMode.SCHEDULED) to
+	 * their position at the current step, before the positions are read by a
+	 * range query or recorded; done at most once per step
+	 */
+	public void syncUAVs(){
+		if(config.travel != TravelMode.SCHEDULED || syncedAt == schedule.getSteps()){
+			return;
+		}
+		syncedAt = schedule.getSteps();
+		for(Object obj : UAVs){
+			UAV uav = (UAV) obj;
+			if(uav.isTravelling()){
+				uav.sync(this, syncedAt);
 			}
 		}
+	}
 
+	/**
+	 * Schedule the next step of a UAV, TravelMode.SCHEDULED only.
+	 * The UAVs waking up at the same step are stepped in the order they have
+	 * been scheduled, a checkpoint keeps it (@see UAV.wakeOrder)
+	 */
+	void wake(UAV uav, double time){
+		uav.wakeOrder = wakes++;
+		schedule.scheduleOnce(time, 1, uav);
+	}
 
-		//schedule all the cells
-		for(int w=0; w<width; w++){
-			for(int h=0; h<height; h++){
-				schedule.scheduleRepeating((WorldCell)forest.field[w][h], 2, 1);
+	/**
+	 * Move the UAVs travelling to their target in the air too, for the display
+	 */
+	public void syncAir(){
+		syncUAVs();
+		for(Object obj : UAVs){
+			UAV uav = (UAV) obj;
+			if(uav.isTravelling()){
+				air.setObjectLocation(uav, new Double3D(uav.x, uav.y, uav.z));
 			}
 		}
+	}
+
+	/**
+	 * Generate a new world and place the agents, nothing is scheduled here
+	 */
+	private void generate(){
+		//fresh counters for each job
+		stats = new IgniteStats(config);
+		int width = config.width;
+		int height = config.height;
+		int depth = config.depth;
 		
+		air = new Continuous3D(1, width, height, depth);
+		//generate the world
+		//the forest is created already filled with trees
+		forest = new Forest(width, height);
+
+		//set the world on fire
+		//store the centroid of the fires in the tasks list
+		tasks = new LinkedList<>();
+		taskTracker = new TaskTracker(forest, tasks);
+
+		//generate lakes and fires, @see IgniteConfig.worldGeneration
+		new WorldGenerator(this).generate();
+
+		fireDynamics = new FireDynamics(this);
 
 		//random placement of agents
 		UAVs = new Bag(); 
-		ArrayList<Double3D> extracted = new ArrayList<Double3D>();
+		HashSet<Double3D> extracted = new HashSet<Double3D>();
 		Double3D location;
 		for(int i = 0 ; i < numUAVs; i++){
+			//store extracted location to avoid duplicates
 			do{
 				location = new Double3D(random.nextInt(width), random.nextInt(height), random.nextInt(depth));
-			} while(extracted.contains(location));
+			} while(!extracted.add(location));
 			//location = new Double3D(0, 0, 0);
 
-			//store extracted location to avoid duplicates
-			extracted.add(location);
 			//generate a new UAV
-			UAV uav = new UAV(i, location);
+			UAV uav = new UAV(i, location, config);
 			//add the UAV to air at the location extracted
 			air.setObjectLocation(uav, location);
-			//schedule the agent
-			schedule.scheduleRepeating(uav, 1, 1);
 
 			UAVs.add(uav);
 		}
-
-		//schedule the fireContrller, used to check the end of the simulation
-		FireController fireController = new FireController();
-		schedule.scheduleRepeating(fireController,3,1);
 	}
 
 
+	/**
+	 * End a simulation run
+	 */
+	public void finish(){
+		super.finish();
+		if(fireDynamics != null){
+			fireDynamics.shutdown();
+		}
+		if(eventLog != null){
+			try {
+				eventLog.close(this);
+			} catch (IOException e) {
+				System.err.println("Exception in Ignite.finish() " + e.toString());
+				e.printStackTrace();
+			}
+			eventLog = null;
+		}
+		//record the outcome of the run, once
+		if(stats != null && !resultRecorded){
+			resultRecorded = true;
+			try {
+				ResultSink sink = resultSink != null ? resultSink : CsvResultSink.getDefault();
+				sink.write(new RunResult(this));
+			} catch (IOException e) {
+				System.err.println("Exception in Ignite.finish() " + e.toString());
+				e.printStackTrace();
+			}
+		}
+	}
+
 	/**
 	 * PDF
 	 * Compute the value of the gaussian PDF at a given x, with a given mean (location parameter) 
@@ -0,0 +1,50 @@
+package sim.app.firecontrol;
+
+/**
+ * The parameters of a single simulation run.
+ * Each Ignite owns its configuration, so that many runs with different
+ * parameters can execute in the same JVM without interfering.
+ * Change the values before start() to have them used by the run.
+ *
+ * @see Ignite
+ * @see IgniteStats
+ */
+public class IgniteConfig implements java.io.Serializable{
+	private static final long serialVersionUID = 1L;
+
+	/* world */
+	public int width = 60; //size of the forest
+	public int height = 60; //size of the forest
+	public int depth = 50; //max altitude
+	public WorldGeneration worldGeneration = WorldGeneration.CLASSIC;
+	public int lakes = 2; //number of lakes
+	public int fires = 3; //number of fires at the beginning of the run
+	public double lakeRadius = 6; //mean radius of the lakes, NOISE only
+	public double fireRadius = 2; //mean radius of the fires, NOISE only
+	public double roughness = 0.5; //how much the noise shapes the border of the blobs, NOISE only
+
+	/* cell dynamics, @see FireDynamics */
+	public double statusThreshold = 10E-3;
+	public double normalStatusMultiplier = 10E-3;
+	public double fireStatusMultiplier = 5*10E-4;
+	public double selfIgniteThreshold = 1-10E-5;
+	public int selfIgniteMax = 0; //max number of cells taking fire by themselves in a run
+	public PropagationMode propagationMode = PropagationMode.SEQUENTIAL;
+	public int tileSize = 64; //side of the tiles processed in parallel, TILED only
+	public int propagationThreads = 0; //threads of a pool of the run, 0 to share ForkJoinPool.commonPool() with the other runs, TILED only
+
+	/* UAVs, the same for all the UAVs of the run */
+	public double linearvelocity = 0.02;
+	public double communicationRange = 60; //communication range for the UAVs
+	public int stepToExtinguish = 10; //used to count the steps needed to extinguish a fire in a location
+	public AllocationStrategy allocation = AllocationStrategy.GREEDY; //how the managers assign the tasks
+	public int mailboxCapacity = 1024; //packets kept by each mailbox, a manager needs two per UAV in range and task, @see Mailbox
+	public TravelMode travel = TravelMode.STEPPED; //how the UAVs move toward their target
+
+	/* checkpoints, @see Checkpoint */
+	public int checkpointEvery = 0; //steps between two checkpoints, 0 for none
+	public String checkpointFile = "checkpoint.fcc";
+
+	/* event log, @see EventLog */
+	public String eventLog = null; //file where the changes of the run are recorded, null for none
+}
@@ -0,0 +1,54 @@
+package sim.app.firecontrol;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The state of a single simulation run that is not part of the forest.
+ * The counters are LongAdders so that they can be updated from the parallel
+ * phases of the simulation (@see PropagationMode.TILED) without contention;
+ * reading them sums the stripes, hence use the getters sparingly.
+ *
+ * A new instance is created by Ignite.start() for each run.
+ *
+ * @see Ignite
+ * @see IgniteConfig
+ */
+public class IgniteStats implements java.io.Serializable{
+	private static final long serialVersionUID = 1L;
+
+	public final LongAdder cellsOnFire = new LongAdder();
+	public final LongAdder cellsBurned = new LongAdder();
+	public final LongAdder cellsOnWater = new LongAdder();
+	public final LongAdder messagesSent = new LongAdder(); //packets delivered between UAVs
+	public final LongAdder messagesDropped = new LongAdder(); //packets dropped from a full inbox, @see Mailbox
+
+	public final long startNanos = System.nanoTime(); //beginning of the run, wall clock
+
+	/* number of cells that can still take fire by themselves, @see IgniteConfig.selfIgniteMax */
+	public int selfIgniteLeft;
+
+	public IgniteStats(IgniteConfig config){
+		this.selfIgniteLeft = config.selfIgniteMax;
+	}
+
+	//GETTERS
+	public long getCellsOnFire(){
+		return cellsOnFire.sum();
+	}
+
+	public long getCellsBurned(){
+		return cellsBurned.sum();
+	}
+
+	public long getCellsOnWater(){
+		return cellsOnWater.sum();
+	}
+
+	public long getMessagesSent(){
+		return messagesSent.sum();
+	}
+
+	public long getMessagesDropped(){
+		return messagesDropped.sum();
+	}
+}
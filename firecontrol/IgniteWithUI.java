@@ -8,22 +8,34 @@
 
 package sim.app.firecontrol;
 
+import java.awt.BorderLayout;
 import java.awt.Color;
 import java.awt.Graphics2D;
+import java.io.File;
+import java.io.IOException;
 
 import javax.swing.JFrame;
+import javax.swing.JLabel;
+import javax.swing.JSlider;
+import javax.swing.Timer;
 
 import sim.display.Controller;
 import sim.display.Display2D;
 import sim.display.GUIState;
 import sim.engine.SimState;
+import sim.engine.Steppable;
+import sim.field.grid.IntGrid2D;
 import sim.portrayal.DrawInfo2D;
+import sim.portrayal.Inspector;
+import sim.portrayal.LocationWrapper;
+import sim.portrayal.SimpleInspector;
 import sim.portrayal.continuous.Continuous3DPortrayal2D;
-import sim.portrayal.grid.FastObjectGridPortrayal2D;
+import sim.portrayal.grid.FastValueGridPortrayal2D;
 import sim.portrayal.simple.CircledPortrayal2D;
 import sim.portrayal.simple.LabelledPortrayal2D;
 import sim.portrayal.simple.OrientedPortrayal2D;
 import sim.portrayal.simple.OvalPortrayal2D;
+import sim.util.Int2D;
 import sim.util.gui.SimpleColorMap;
 
 public class IgniteWithUI extends GUIState
@@ -31,27 +43,50 @@ public class IgniteWithUI extends GUIState
 	public Display2D display;
 	public JFrame displayFrame;
 
-	public static void main(String[] args){
+	public JFrame replayFrame;
+	private Timer replayTimer;
+
+	/**
+	 * Run a new simulation, or play back a recorded one with: -replay <event log>
+	 */
+	public static void main(String[] args) throws IOException{
+		if(args.length == 2 && args[0].equals("-replay")){
+			Ignite ignite = new Ignite(0);
+			ignite.replay = new Replay(new File(args[1]));
+			new IgniteWithUI(ignite).createController();
+			return;
+		}
 		new IgniteWithUI().createController();  // randomizes by currentTimeMillis
 	}
 
+	/* the color of each CellType, by ordinal: NORMAL and EXTINGUISHED, FIRE, BURNED, WATER */
+	private static final int[] SHADES = {0, 0, 1, 2, 3};
+
 	Continuous3DPortrayal2D airPortrayal = new Continuous3DPortrayal2D();
-	FastObjectGridPortrayal2D cellPortrayal = new FastObjectGridPortrayal2D(){
-		public double doubleValue(Object obj){
-			WorldCell cell = (WorldCell) obj;
-			if(cell.type == CellType.NORMAL || cell.type == CellType.EXTINGUISHED){
-				return 0;
-			}
-			if(cell.type == CellType.FIRE){
-				return 1;
-			}
-			if(cell.type == CellType.BURNED){
-				return 2;
+	/* the shades of the cells, copied from the type plane of the forest before
+	 * each draw: no object is kept per cell, a WorldCell view is only made to
+	 * inspect a cell */
+	IntGrid2D shades;
+	FastValueGridPortrayal2D cellPortrayal = new FastValueGridPortrayal2D(){
+		private static final long serialVersionUID = 1L;
+
+		public void draw(Object object, Graphics2D graphics, DrawInfo2D info){
+			Forest forest = ((Ignite) IgniteWithUI.this.state).forest;
+			for(int x=0; x<forest.width; x++){
+				int[] column = shades.field[x];
+				for(int y=0; y<forest.height; y++){
+					column[y] = SHADES[forest.type[forest.index(x, y)]];
+				}
 			}
-			if(cell.type == CellType.WATER){
-				return 3;
+			super.draw(object, graphics, info);
+		}
+
+		public Inspector getInspector(LocationWrapper wrapper, GUIState gui){
+			if(wrapper == null){
+				return null;
 			}
-			return 0;
+			Int2D location = (Int2D) wrapper.getLocation();
+			return new SimpleInspector(((Ignite) IgniteWithUI.this.state).forest.getCell(location.x, location.y), gui, "Cell");
 		}
 	};
 			
@@ -81,7 +116,9 @@ public class IgniteWithUI extends GUIState
 		Ignite ignite= (Ignite)state;
 
 		// set up the cellPortrayal
-		this.cellPortrayal.setField(ignite.forest);
+		// the portrayal needs a grid of values, filled from the type plane when drawn
+		this.shades = new IntGrid2D(ignite.forest.width, ignite.forest.height);
+		this.cellPortrayal.setField(shades);
 		Color colors[] = new Color[]{new Color(50,180,20,255), new Color(180,50,20,255), Color.gray, Color.blue};
 		final SimpleColorMap map = new sim.util.gui.SimpleColorMap(colors);
 		cellPortrayal.setMap(map);
@@ -92,6 +129,14 @@ public class IgniteWithUI extends GUIState
 		
 		// set up the airPortrayal
 		airPortrayal.setField(ignite.air);
+		// the UAVs on the way are only moved in the air when shown, @see TravelMode.SCHEDULED
+		scheduleRepeatingImmediatelyAfter(new Steppable(){
+			private static final long serialVersionUID = 1L;
+
+			public void step(SimState state){
+				((Ignite) state).syncAir();
+			}
+		});
 		OrientedPortrayal2D op = new OrientedPortrayal2D(new OvalPortrayal2D(Color.white, 0.85){
 			private static final long serialVersionUID = 1L;
 
@@ -125,7 +170,45 @@ public class IgniteWithUI extends GUIState
 		c.registerFrame(displayFrame);   // register the frame so it appears in the "Display" list
 		displayFrame.setVisible(true);
 		display.attach( cellPortrayal, "Forest" );
-		display.attach( airPortrayal, "UAVs" , dispWidth/(Ignite.width*2), dispHeight/(Ignite.height*2), true);
+		Ignite ignite = (Ignite) state;
+		IgniteConfig config = ignite.replay != null ? ignite.replay.config : ignite.config;
+		display.attach( airPortrayal, "UAVs" , dispWidth/(config.width*2), dispHeight/(config.height*2), true);
+
+		if(ignite.replay != null){
+			createScrubber(c, ignite.replay);
+		}
+	}
+
+	/**
+	 * A slider over the steps of the replay, to move to any step, forward or back
+	 */
+	private void createScrubber(Controller c, Replay replay){
+		JSlider slider = new JSlider((int) replay.getFirstStep(), (int) replay.getLastStep(), (int) replay.getStep());
+		JLabel label = new JLabel("Step " + replay.getStep());
+		slider.addChangeListener(e -> {
+			//the model thread plays the replay while holding the schedule
+			synchronized(state.schedule){
+				replay.seek(slider.getValue());
+			}
+			label.setText("Step " + replay.getStep() + ", " + replay.getPackets().size() + " packets");
+			if(display != null){
+				display.repaint();
+			}
+		});
+		//follow the replay while it plays
+		replayTimer = new Timer(100, e -> {
+			if(!slider.getValueIsAdjusting() && slider.getValue() != replay.getStep()){
+				slider.setValue((int) replay.getStep());
+			}
+		});
+		replayTimer.start();
+
+		replayFrame = new JFrame("Replay");
+		replayFrame.getContentPane().add(slider, BorderLayout.CENTER);
+		replayFrame.getContentPane().add(label, BorderLayout.SOUTH);
+		replayFrame.pack();
+		c.registerFrame(replayFrame);
+		replayFrame.setVisible(true);
 	}
 
 	public void quit()
@@ -135,6 +218,10 @@ public class IgniteWithUI extends GUIState
 		if (displayFrame!=null) displayFrame.dispose();
 		displayFrame = null;
 		display = null;
+		if (replayTimer!=null) replayTimer.stop();
+		replayTimer = null;
+		if (replayFrame!=null) replayFrame.dispose();
+		replayFrame = null;
 	}
 
 }
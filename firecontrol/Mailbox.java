@@ -0,0 +1,126 @@
+package sim.app.firecontrol;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Bounded queue of the packets sent or received by a UAV.
+ * The packets are kept in a ring buffer, from the oldest to the newest; when
+ * the buffer is full the oldest packet is dropped to make room for the new
+ * one, so that a UAV that does not read its mail cannot grow without bound.
+ * The packets are retired as soon as they are no longer needed:
+ * - a worker handles all the BIDs and the AWARDs received at once, then its
+ *   inbox is emptied (@see UAV.selectTask)
+ * - a manager records the PROPOSEs received in its round, then its inbox is
+ *   emptied (@see ContractRound); when it awards the tasks the round is over
+ *   and its BIDs are retired
+ *
+ * @see IgniteConfig.mailboxCapacity
+ */
+public class Mailbox implements Iterable<DataPacket>, java.io.Serializable{
+	private static final long serialVersionUID = 1L;
+
+	private final DataPacket[] packets;
+	private int head; //index of the oldest packet
+	private int size;
+	private long added; //packets added since the mailbox was created
+
+	public Mailbox(int capacity){
+		this.packets = new DataPacket[Math.max(capacity, 1)];
+	}
+
+	/**
+	 * Append a packet, dropping the oldest one if the mailbox is full
+	 * @return the packet dropped, null if none
+	 */
+	public DataPacket add(DataPacket packet){
+		DataPacket dropped = null;
+		if(size == packets.length){
+			dropped = packets[head];
+			head = (head + 1) % packets.length;
+			size--;
+		}
+		packets[(head + size) % packets.length] = packet;
+		size++;
+		added++;
+		return dropped;
+	}
+
+	/**
+	 * @return the i-th packet, from the oldest
+	 */
+	public DataPacket get(int i){
+		if(i < 0 || i >= size){
+			throw new IndexOutOfBoundsException(i + " of " + size);
+		}
+		return packets[(head + i) % packets.length];
+	}
+
+	public int size(){
+		return size;
+	}
+
+	public boolean isEmpty(){
+		return size == 0;
+	}
+
+	public int getCapacity(){
+		return packets.length;
+	}
+
+	/**
+	 * @return the number of packets added since the mailbox was created,
+	 * including the ones dropped or retired since
+	 */
+	public long getAdded(){
+		return added;
+	}
+
+	public void clear(){
+		for(int i=0; i<size; i++){
+			packets[(head + i) % packets.length] = null;
+		}
+		head = 0;
+		size = 0;
+	}
+
+	/**
+	 * Remove the packets of the given type, keeping the order of the others
+	 */
+	public void retire(DataPacketType type){
+		int kept = 0;
+		for(int i=0; i<size; i++){
+			DataPacket packet = packets[(head + i) % packets.length];
+			if(packet.type != type){
+				packets[(head + kept++) % packets.length] = packet;
+			}
+		}
+		for(int i=kept; i<size; i++){
+			packets[(head + i) % packets.length] = null;
+		}
+		size = kept;
+	}
+
+	/**
+	 * From the oldest to the newest packet
+	 */
+	@Override
+	public Iterator<DataPacket> iterator(){
+		return new Iterator<DataPacket>(){
+			private int next = 0;
+
+			@Override
+			public boolean hasNext(){
+				return next < size;
+			}
+
+			@Override
+			public DataPacket next(){
+				if(next >= size){
+					throw new NoSuchElementException();
+				}
+				return get(next++);
+			}
+		};
+	}
+}
@@ -0,0 +1,204 @@
+package sim.app.firecontrol;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+import sim.util.Bag;
+
+/**
+ * Election of the managers of the Contract Net Protocol.
+ * The UAVs within communication range of each other form clusters (the
+ * connected components of the communication graph). In each cluster the UAV
+ * with the most neighbors becomes a manager, then the next one among the UAVs
+ * not in range of a manager, and so on; a manager with no neighbors is a
+ * LONE_MANAGER. The roles are only assigned by the election, and a new
+ * election is held when there is no MANAGER left.
+ *
+ * The election is incremental: the greedy choice in a cluster depends only on
+ * the cluster, hence only the clusters of the UAVs that moved since the last
+ * election, and the clusters they joined, are computed again; in the others
+ * the election would pick the same managers. The number of managers is kept
+ * as the roles change, so checking whether an election is needed costs nothing.
+ *
+ * Built by Ignite.start(), the moves are reported by UAV.move (or UAV.sync for
+ * the UAVs travelling, @see TravelMode).
+ *
+ * @see UAVRole
+ * @see UAVIndex
+ */
+public class ManagerElection implements java.io.Serializable{
+	private static final long serialVersionUID = 1L;
+
+	private final int size;
+	/* the UAVs with the MANAGER role */
+	private int managers;
+
+	/* clusters of the last election: the label of each UAV (the id of a
+	 * member) and the members of each label, linked through their ids */
+	private final int[] clusterOf;
+	private final int[] clusterHead;
+	private final int[] nextInCluster;
+	/* the UAVs moved since the last election */
+	private final BitSet moved;
+
+	/* scratch space of an election */
+	private final BitSet affected;
+	private final BitSet seen;
+	private final BitSet covered;
+	private final int[] members;
+	private final int[] degree;
+	private final long[] order;
+	private final int[] found;
+
+	public ManagerElection(Bag UAVs){
+		this.size = UAVs.numObjs;
+		this.clusterOf = new int[size];
+		this.clusterHead = new int[size];
+		this.nextInCluster = new int[size];
+		this.moved = new BitSet(size);
+		this.affected = new BitSet(size);
+		this.seen = new BitSet(size);
+		this.covered = new BitSet(size);
+		this.members = new int[size];
+		this.degree = new int[size];
+		this.order = new long[size];
+		this.found = new int[size];
+		for(int i=0; i<size; i++){
+			if(((UAV) UAVs.objs[i]).role == UAVRole.MANAGER){
+				managers++;
+			}
+			//no cluster is known yet
+			clusterOf[i] = i;
+			clusterHead[i] = i;
+			nextInCluster[i] = -1;
+		}
+		invalidate();
+	}
+
+	/**
+	 * @return true if there is no MANAGER, so that the UAVs have to elect them
+	 */
+	public boolean isNeeded(){
+		return managers == 0;
+	}
+
+	public int getManagers(){
+		return managers;
+	}
+
+	/**
+	 * The given UAV changed position, called by UAV.move
+	 */
+	public void moved(UAV uav){
+		moved.set(uav.id);
+	}
+
+	/**
+	 * Compute all the clusters again at the next election, e.g. after the
+	 * roles have been changed from outside
+	 */
+	public void invalidate(){
+		moved.set(0, size);
+	}
+
+	/**
+	 * Change the role of a UAV, keeping the count of the managers
+	 */
+	public void setRole(UAV uav, UAVRole role){
+		if(uav.role == UAVRole.MANAGER){
+			managers--;
+		}
+		if(role == UAVRole.MANAGER){
+			managers++;
+		}
+		uav.role = role;
+	}
+
+	/**
+	 * Elect the managers of the clusters changed since the last election
+	 * @return the number of UAVs whose cluster has been computed again
+	 */
+	public int elect(Ignite ignite){
+		//the moved UAVs and all the members of their last clusters
+		for(int m=moved.nextSetBit(0); m>=0; m=moved.nextSetBit(m+1)){
+			if(!affected.get(m)){
+				for(int id=clusterHead[clusterOf[m]]; id>=0; id=nextInCluster[id]){
+					affected.set(id);
+				}
+			}
+		}
+		moved.clear();
+
+		//the clusters they belong to now. A cluster reached from them whose
+		//members did not move is taken as a whole, so no cluster is left split
+		int recomputed = 0;
+		for(int s=affected.nextSetBit(0); s>=0; s=affected.nextSetBit(s+1)){
+			if(!seen.get(s)){
+				int count = cluster(ignite, s);
+				elect(ignite, count);
+				recomputed += count;
+			}
+		}
+		affected.clear();
+		seen.clear();
+		return recomputed;
+	}
+
+	/**
+	 * Visit the cluster of the given UAV, store it as the cluster labeled by it
+	 * @return the number of members, in members[0, count)
+	 */
+	private int cluster(Ignite ignite, int first){
+		int count = 0;
+		members[count++] = first;
+		seen.set(first);
+		for(int i=0; i<count; i++){
+			int id = members[i];
+			int neighbors = neighbors(ignite, id);
+			degree[id] = neighbors;
+			for(int n=0; n<neighbors; n++){
+				if(!seen.get(found[n])){
+					seen.set(found[n]);
+					members[count++] = found[n];
+				}
+			}
+		}
+		clusterHead[first] = first;
+		for(int i=0; i<count; i++){
+			clusterOf[members[i]] = first;
+			nextInCluster[members[i]] = i+1 < count ? members[i+1] : -1;
+		}
+		return count;
+	}
+
+	/**
+	 * Greedy choice of the managers of the cluster in members[0, count): the
+	 * most connected UAV not in range of a manager, the highest id first on ties
+	 */
+	private void elect(Ignite ignite, int count){
+		for(int i=0; i<count; i++){
+			order[i] = (long) degree[members[i]] << 32 | members[i];
+		}
+		Arrays.sort(order, 0, count);
+		for(int i=count-1; i>=0; i--){
+			int id = (int) order[i];
+			if(covered.get(id)){
+				continue;
+			}
+			covered.set(id);
+			setRole((UAV) ignite.UAVs.objs[id], degree[id] > 0 ? UAVRole.MANAGER : UAVRole.LONE_MANAGER);
+			int neighbors = neighbors(ignite, id);
+			for(int n=0; n<neighbors; n++){
+				covered.set(found[n]);
+			}
+		}
+		for(int i=0; i<count; i++){
+			covered.clear(members[i]);
+		}
+	}
+
+	private int neighbors(Ignite ignite, int id){
+		UAV uav = (UAV) ignite.UAVs.objs[id];
+		return ignite.uavIndex.query(uav.x, uav.y, uav.z, ignite.config.communicationRange, id, found);
+	}
+}
@@ -0,0 +1,21 @@
+/**
+ * Define how FireDynamics propagates the fire.
+ * SEQUENTIAL, the reference implementation: a single thread visits the cells on
+ * fire one by one drawing from the random generator of the simulation
+ * TILED, the forest is split into square tiles processed in parallel, each one with
+ * its own random stream; for a given seed the outcome does not depend on the number
+ * of threads
+ * VECTOR, the rows touched by the fires are processed with the Vector API, a vector
+ * of cells at a time, on a single thread; the rules are the ones of TILED, but the
+ * random numbers are hashed from the seed, the step and the index of each cell, so a
+ * given seed has an outcome of its own. It needs the sources of firecontrol-vector
+ * and the module jdk.incubator.vector (@see RowKernel)
+ *
+ * @see FireDynamics
+ */
+
+package sim.app.firecontrol;
+
+public enum PropagationMode {
+	SEQUENTIAL, TILED, VECTOR
+}
@@ -0,0 +1,382 @@
+package sim.app.firecontrol;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+import sim.engine.SimState;
+import sim.engine.Steppable;
+import sim.field.continuous.Continuous3D;
+import sim.util.Bag;
+import sim.util.Double3D;
+import sim.util.Int2D;
+
+/**
+ * Play back an EventLog, moving to any step of the run, forward or back.
+ * The fire and the agents are not run: the changes of each step are applied
+ * to a forest, to UAVs and to tasks that are only used for display, hence the
+ * status of the cells and the mailboxes of the UAVs are not there. The packets
+ * sent in the current step are available (@see getPackets).
+ *
+ * The log is read into memory once, taking a keyframe (a copy of the whole
+ * state) every time the changes applied since the previous one are as big as
+ * the forest. Any step is then rebuilt from the keyframe before it, applying
+ * at most as many bytes of changes as the size of the forest, and the
+ * keyframes take at most as much memory as the log.
+ *
+ * Play it back with IgniteWithUI -replay <log>, or from code setting
+ * Ignite.replay before start(): each step of the schedule plays one step.
+ *
+ * @see EventLog
+ */
+public class Replay implements Steppable{
+	private static final long serialVersionUID = 1L;
+
+	/* a packet sent in the current step */
+	public static class Packet{
+		public final int sender;
+		public final int receiver;
+		public final DataPacketType type;
+		public final int task; //-1 if the packet does not carry a task
+
+		Packet(int sender, int receiver, DataPacketType type, int task){
+			this.sender = sender;
+			this.receiver = receiver;
+			this.type = type;
+			this.task = task;
+		}
+
+		@Override
+		public String toString(){
+			return type + " " + sender + "->" + receiver + (task >= 0 ? " task " + task : "");
+		}
+	}
+
+	/* the whole state at a step */
+	private static class Keyframe{
+		long step;
+		int position;
+		byte[] type;
+		double[] positions;
+		Double3D[] targets;
+		AgentAction[] actions;
+		UAVRole[] roles;
+		int[] tasks; //id, x, y of each task
+		double[] radius;
+	}
+
+	private static final AgentAction[] ACTIONS = AgentAction.values();
+	private static final UAVRole[] ROLES = UAVRole.values();
+	private static final DataPacketType[] PACKET_TYPES = DataPacketType.values();
+
+	public final IgniteConfig config = new IgniteConfig();
+	private final ByteBuffer data;
+	private final long firstStep;
+	private final long lastStep;
+	private final List<Keyframe> keyframes = new ArrayList<>();
+
+	/* the state at the current step */
+	private final Forest forest;
+	private final Continuous3D air;
+	private final Bag UAVs = new Bag();
+	private final LinkedList<Task> tasks = new LinkedList<>();
+	private final Map<Integer, Task> tasksById = new HashMap<>();
+	private final List<Packet> packets = new ArrayList<>();
+	private long step;
+	private int position; //of the records of the next step
+
+	/**
+	 * Read the whole log, and move to its first step
+	 */
+	public Replay(File file) throws IOException{
+		try(FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)){
+			this.data = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()).load();
+		}
+		if(data.getInt() != EventLog.MAGIC){
+			throw new IOException(file + " is not an event log");
+		}
+		int version = data.getInt();
+		if(version != EventLog.VERSION){
+			throw new IOException("Unsupported event log version " + version);
+		}
+		config.width = data.getInt();
+		config.height = data.getInt();
+		config.depth = data.getInt();
+		int uavs = data.getInt();
+		this.firstStep = data.getLong();
+		this.forest = new Forest(config.width, config.height);
+		data.get(forest.type);
+		this.air = new Continuous3D(1, config.width, config.height, config.depth);
+		for(int i=0; i<uavs; i++){
+			UAVs.add(new UAV(i, new Double3D(0, 0, 0), config));
+		}
+
+		//play the whole log once, to find the steps and to take the keyframes
+		this.position = data.position();
+		this.step = firstStep - 1;
+		applyStep();
+		keyframes.add(keyframe());
+		int sinceKeyframe = 0;
+		int threshold = Math.max(forest.size(), 1 << 16);
+		while(position < data.limit()){
+			int from = position;
+			applyStep();
+			sinceKeyframe += position - from;
+			if(sinceKeyframe >= threshold){
+				keyframes.add(keyframe());
+				sinceKeyframe = 0;
+			}
+		}
+		this.lastStep = step;
+		seek(firstStep);
+	}
+
+	public long getFirstStep(){
+		return firstStep;
+	}
+
+	public long getLastStep(){
+		return lastStep;
+	}
+
+	/**
+	 * @return the step whose state is shown
+	 */
+	public long getStep(){
+		return step;
+	}
+
+	/**
+	 * @return the packets sent in the current step
+	 */
+	public List<Packet> getPackets(){
+		return packets;
+	}
+
+	/**
+	 * Show the state of the run at the end of the given step
+	 */
+	public void seek(long target){
+		target = Math.max(firstStep, Math.min(target, lastStep));
+		if(target == step){
+			return;
+		}
+		//the last keyframe before the step, so that its packets are read again
+		Keyframe keyframe = keyframes.get(0);
+		for(int lo=0, hi=keyframes.size()-1; lo<=hi;){
+			int mid = (lo + hi) >>> 1;
+			if(keyframes.get(mid).step < target){
+				keyframe = keyframes.get(mid);
+				lo = mid + 1;
+			} else {
+				hi = mid - 1;
+			}
+		}
+		if(target < step || keyframe.step > step){
+			restore(keyframe);
+		}
+		while(step < target){
+			applyStep();
+		}
+	}
+
+	/**
+	 * Show the given run in place of the simulation, called by Ignite.start()
+	 */
+	void attach(Ignite ignite){
+		ignite.config = config;
+		ignite.forest = forest;
+		ignite.air = air;
+		ignite.UAVs = UAVs;
+		ignite.tasks = tasks;
+		ignite.numUAVs = UAVs.numObjs;
+	}
+
+	/**
+	 * Play the next step, stop at the end of the log
+	 */
+	@Override
+	public void step(SimState state){
+		if(step >= lastStep){
+			state.kill();
+			return;
+		}
+		seek(step + 1);
+	}
+
+	/**
+	 * Apply the records of the step after the current one
+	 */
+	private void applyStep(){
+		packets.clear();
+		data.position(position);
+		UAV uav;
+		while(true){
+			byte tag = data.get();
+			switch(tag){
+			case EventLog.STEP_END:
+				step = readVarLong();
+				position = data.position();
+				return;
+			case EventLog.CELL:
+				forest.type[readVarInt()] = data.get();
+				break;
+			case EventLog.UAV_POSITION:
+				move(uav(readVarInt()), data.getFloat(), data.getFloat(), data.getFloat());
+				break;
+			case EventLog.UAV_TARGET:
+				uav = uav(readVarInt());
+				uav.target = data.get() != 0 ? new Double3D(data.getFloat(), data.getFloat(), data.getFloat()) : null;
+				break;
+			case EventLog.UAV_ACTION:
+				uav = uav(readVarInt());
+				int action = data.get();
+				uav.action = action < 0 ? null : ACTIONS[action];
+				break;
+			case EventLog.UAV_ROLE:
+				uav = uav(readVarInt());
+				uav.role = ROLES[data.get()];
+				break;
+			case EventLog.TASK:
+				updateTask(readVarInt(), readVarInt(), readVarInt(), data.getFloat());
+				break;
+			case EventLog.TASK_RETIRED:
+				tasks.remove(tasksById.remove(readVarInt()));
+				break;
+			case EventLog.PACKET:
+				int sender = readVarInt();
+				int receiver = readVarInt();
+				DataPacketType type = PACKET_TYPES[data.get()];
+				packets.add(new Packet(sender, receiver, type, readVarInt() - 1));
+				break;
+			default:
+				throw new IllegalStateException("Unknown record " + tag + " at " + (data.position() - 1));
+			}
+		}
+	}
+
+	private UAV uav(int id){
+		return (UAV) UAVs.objs[id];
+	}
+
+	private void move(UAV uav, double x, double y, double z){
+		uav.x = x;
+		uav.y = y;
+		uav.z = z;
+		air.setObjectLocation(uav, new Double3D(x, y, z));
+	}
+
+	private void updateTask(int id, int x, int y, double radius){
+		Task task = tasksById.get(id);
+		if(task == null){
+			task = new Task(id, forest, new Int2D(x, y), 0);
+			tasksById.put(id, task);
+			tasks.add(task);
+		}
+		task.centroid = new Int2D(x, y);
+		task.radius = radius;
+	}
+
+	private Keyframe keyframe(){
+		Keyframe keyframe = new Keyframe();
+		keyframe.step = step;
+		keyframe.position = position;
+		keyframe.type = forest.type.clone();
+		int uavs = UAVs.numObjs;
+		keyframe.positions = new double[3*uavs];
+		keyframe.targets = new Double3D[uavs];
+		keyframe.actions = new AgentAction[uavs];
+		keyframe.roles = new UAVRole[uavs];
+		for(int i=0; i<uavs; i++){
+			UAV uav = uav(i);
+			keyframe.positions[3*i] = uav.x;
+			keyframe.positions[3*i+1] = uav.y;
+			keyframe.positions[3*i+2] = uav.z;
+			keyframe.targets[i] = uav.target;
+			keyframe.actions[i] = uav.action;
+			keyframe.roles[i] = uav.role;
+		}
+		keyframe.tasks = new int[3*tasks.size()];
+		keyframe.radius = new double[tasks.size()];
+		int t = 0;
+		for(Task task : tasks){
+			keyframe.tasks[3*t] = task.id;
+			keyframe.tasks[3*t+1] = task.centroid.x;
+			keyframe.tasks[3*t+2] = task.centroid.y;
+			keyframe.radius[t++] = task.radius;
+		}
+		return keyframe;
+	}
+
+	private void restore(Keyframe keyframe){
+		step = keyframe.step;
+		position = keyframe.position;
+		packets.clear();
+		System.arraycopy(keyframe.type, 0, forest.type, 0, forest.type.length);
+		for(int i=0; i<UAVs.numObjs; i++){
+			UAV uav = uav(i);
+			move(uav, keyframe.positions[3*i], keyframe.positions[3*i+1], keyframe.positions[3*i+2]);
+			uav.target = keyframe.targets[i];
+			uav.action = keyframe.actions[i];
+			uav.role = keyframe.roles[i];
+		}
+		tasks.clear();
+		tasksById.clear();
+		for(int t=0; t<keyframe.radius.length; t++){
+			updateTask(keyframe.tasks[3*t], keyframe.tasks[3*t+1], keyframe.tasks[3*t+2], keyframe.radius[t]);
+		}
+	}
+
+	private int readVarInt(){
+		return (int) readVarLong();
+	}
+
+	private long readVarLong(){
+		long value = 0;
+		for(int shift=0; ; shift+=7){
+			byte b = data.get();
+			value |= (long) (b & 0x7F) << shift;
+			if(b >= 0){
+				return value;
+			}
+		}
+	}
+
+	/**
+	 * Print the state of a recorded run at the given steps, e.g.
+	 *   java sim.app.firecontrol.Replay run.fcl 100 2500
+	 */
+	public static void main(String[] args) throws IOException{
+		long start = System.nanoTime();
+		Replay replay = new Replay(new File(args[0]));
+		System.out.println("Steps " + replay.getFirstStep() + "-" + replay.getLastStep() + ", " + replay.keyframes.size()
+				+ " keyframes, read in " + (System.nanoTime() - start)/1000000 + " ms");
+		for(int i=1; i<args.length; i++){
+			replay.seek(Long.parseLong(args[i]));
+			int[] types = new int[CellType.values().length];
+			for(byte type : replay.forest.type){
+				types[type]++;
+			}
+			System.out.println("Step " + replay.getStep());
+			for(CellType type : CellType.values()){
+				System.out.println("  " + type + " " + types[type.ordinal()]);
+			}
+			for(Object obj : replay.UAVs){
+				System.out.println("  " + obj + " target " + ((UAV) obj).target + " " + ((UAV) obj).role);
+			}
+			for(Task task : replay.tasks){
+				System.out.println("  Task " + task.id + " " + task.centroid + " radius " + task.radius);
+			}
+			for(Packet packet : replay.packets){
+				System.out.println("  " + packet);
+			}
+		}
+	}
+}
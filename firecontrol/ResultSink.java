@@ -0,0 +1,25 @@
+package sim.app.firecontrol;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Where the outcome of the simulation runs goes.
+ * A sink lives across many runs and may be shared by runs executing on
+ * different threads, hence implementations must be safe for concurrent writers.
+ *
+ * @see RunResult
+ * @see CsvResultSink
+ */
+public interface ResultSink extends Closeable{
+
+	/**
+	 * Append the outcome of a run.
+	 */
+	public void write(RunResult result) throws IOException;
+
+	/**
+	 * Push the buffered records, if any, to the underlying storage.
+	 */
+	public void flush() throws IOException;
+}
@@ -0,0 +1,36 @@
+package sim.app.firecontrol;
+
+import sim.util.IntBag;
+
+/**
+ * Fire propagation over the rows of the forest, the VECTOR mode of FireDynamics
+ * (@see PropagationMode).
+ * The implementation (VectorRowKernel) is built on the Vector API, an incubator
+ * module: it is kept in the source root firecontrol-vector and loaded by name,
+ * so that the rest of the simulation is compiled and run without the module.
+ */
+interface RowKernel{
+
+	/**
+	 * Update the status of the cells within one cell from the given fires.
+	 * @param burned, filled with the fire cells burning out, in row order
+	 * @param igniting, filled with the normal cells taking fire, in row order
+	 * @return the number of spans of cells processed
+	 */
+	public int process(Ignite ignite, IntBag burning, IntBag burned, IntBag igniting);
+
+	/**
+	 * @return the kernel of the given forest
+	 * @throws IllegalStateException if firecontrol-vector has not been compiled
+	 * with the simulation, or the module jdk.incubator.vector is not available
+	 */
+	public static RowKernel load(Forest forest){
+		try {
+			return (RowKernel) Class.forName("sim.app.firecontrol.VectorRowKernel")
+					.getDeclaredConstructor(Forest.class).newInstance(forest);
+		} catch (ReflectiveOperationException | LinkageError e) {
+			throw new IllegalStateException("VECTOR propagation needs the sources of firecontrol-vector, "
+					+ "compiled and run with --add-modules jdk.incubator.vector", e);
+		}
+	}
+}
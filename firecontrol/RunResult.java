@@ -0,0 +1,72 @@
+package sim.app.firecontrol;
+
+import java.util.Locale;
+
+/**
+ * The outcome of a single simulation run, with a fixed schema.
+ * Records are written one per line as comma separated values, in the order
+ * of HEADER.
+ *
+ * @see ResultSink
+ */
+public class RunResult implements java.io.Serializable{
+	private static final long serialVersionUID = 1L;
+
+	public static final String HEADER = "seed,numUAVs,communicationRange,linearvelocity,stepToExtinguish,width,height,propagationMode,"
+			+ "steps,cellsOnFire,cellsBurned,messagesSent,wallMillis";
+
+	public final long seed;
+	/* params */
+	public final int numUAVs;
+	public final double communicationRange;
+	public final double linearvelocity;
+	public final int stepToExtinguish;
+	public final int width;
+	public final int height;
+	public final PropagationMode propagationMode;
+	/* outcome */
+	public final long steps; //last step of the run
+	public final long cellsOnFire; //0 if the fires have been contained
+	public final long cellsBurned;
+	public final long messagesSent;
+	public final long wallMillis;
+
+	/**
+	 * Collect the outcome of the given run, as it is now.
+	 */
+	public RunResult(Ignite ignite){
+		IgniteConfig config = ignite.config;
+		IgniteStats stats = ignite.stats;
+		this.seed = ignite.seed();
+		this.numUAVs = ignite.numUAVs;
+		this.communicationRange = config.communicationRange;
+		this.linearvelocity = config.linearvelocity;
+		this.stepToExtinguish = config.stepToExtinguish;
+		this.width = config.width;
+		this.height = config.height;
+		this.propagationMode = config.propagationMode;
+		this.steps = ignite.schedule.getSteps();
+		this.cellsOnFire = stats.getCellsOnFire();
+		this.cellsBurned = stats.getCellsBurned();
+		this.messagesSent = stats.getMessagesSent();
+		this.wallMillis = (System.nanoTime() - stats.startNanos) / 1000000;
+	}
+
+	public boolean isContained(){
+		return cellsOnFire == 0;
+	}
+
+	/**
+	 * @return the record as a CSV line, without line separator
+	 */
+	public String toCsv(){
+		return String.format(Locale.ROOT, "%d,%d,%s,%s,%d,%d,%d,%s,%d,%d,%d,%d,%d",
+				seed, numUAVs, communicationRange, linearvelocity, stepToExtinguish, width, height, propagationMode,
+				steps, cellsOnFire, cellsBurned, messagesSent, wallMillis);
+	}
+
+	@Override
+	public String toString(){
+		return toCsv();
+	}
+}
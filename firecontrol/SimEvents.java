@@ -0,0 +1,182 @@
+package sim.app.firecontrol;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * JDK Flight Recorder events for the main phases of a simulation step.
+ * Record with, e.g.:
+ *   java -XX:StartFlightRecording=filename=run.jfr ... sim.app.firecontrol.SweepRunner ...
+ * and open run.jfr with JDK Mission Control, or `jfr print --events sim.firecontrol.* run.jfr`.
+ *
+ * Each phase follows the same pattern: create the event, begin(), run the phase,
+ * then record(...). The counts are collected only if the event is going to be
+ * committed, and the JIT removes the unused event objects, so a disabled event
+ * costs close to nothing.
+ */
+public final class SimEvents{
+
+	private SimEvents(){}
+
+	@Name("sim.firecontrol.Election")
+	@Label("Manager Election")
+	@Category({"Fire Control", "UAV"})
+	@Description("ManagerElection.elect")
+	public static class Election extends Event{
+		@Label("UAVs")
+		int uavs;
+		@Label("Recomputed")
+		@Description("UAVs whose cluster has been computed again")
+		int recomputed;
+		@Label("Managers")
+		int managers;
+
+		public void record(Ignite ignite, int recomputed){
+			end();
+			if(shouldCommit()){
+				uavs = ignite.UAVs.numObjs;
+				this.recomputed = recomputed;
+				for(Object obj : ignite.UAVs){
+					if(((UAV) obj).role != UAVRole.WORKER){
+						managers++;
+					}
+				}
+				commit();
+			}
+		}
+	}
+
+	@Name("sim.firecontrol.CnpRound")
+	@Label("CNP Round")
+	@Category({"Fire Control", "UAV"})
+	@Description("UAV.selectTask, messages sent by the UAV in the round")
+	public static class CnpRound extends Event{
+		@Label("UAV")
+		int uav;
+		@Label("Role")
+		String role;
+		@Label("Bids")
+		int bids;
+		@Label("Proposals")
+		int proposals;
+		@Label("Awards")
+		int awards;
+		@Label("Replies")
+		@Description("Accepted and refused awards")
+		int replies;
+		@Label("Active Tasks")
+		int tasks;
+
+		/**
+		 * @param sentBefore, the number of packets sent by the UAV before the round, @see Mailbox.getAdded
+		 */
+		public void record(Ignite ignite, UAV uav, long sentBefore){
+			end();
+			if(shouldCommit()){
+				this.uav = uav.id;
+				this.role = uav.role.toString();
+				this.tasks = ignite.tasks.size();
+				Mailbox sent = uav.sentDataPackets;
+				int count = (int) Math.min(sent.getAdded() - sentBefore, sent.size());
+				for(int i = sent.size() - count; i < sent.size(); i++){
+					switch(sent.get(i).type){
+					case BID:		bids++; break;
+					case PROPOSE:	proposals++; break;
+					case AWARD:		awards++; break;
+					default:		replies++; break;
+					}
+				}
+				commit();
+			}
+		}
+	}
+
+	@Name("sim.firecontrol.SelectCell")
+	@Label("Cell Selection")
+	@Category({"Fire Control", "UAV"})
+	@Description("UAV.selectCell, search of the next cell to extinguish")
+	public static class SelectCell extends Event{
+		@Label("UAV")
+		int uav;
+		@Label("Task")
+		int task;
+		@Label("Task Cells")
+		int taskCells;
+		@Label("Target Cell")
+		@Description("Index of the cell selected, -1 if none")
+		int cell;
+
+		public void record(UAV uav, Task task, int cell){
+			end();
+			if(shouldCommit()){
+				this.uav = uav.id;
+				this.task = task.id;
+				this.taskCells = task.cells.size();
+				this.cell = cell;
+				commit();
+			}
+		}
+	}
+
+	@Name("sim.firecontrol.Propagation")
+	@Label("Fire Propagation")
+	@Category({"Fire Control", "Forest"})
+	@Description("FireDynamics.step")
+	public static class Propagation extends Event{
+		@Label("Mode")
+		String mode;
+		@Label("Active Cells")
+		@Description("Cells on fire at the beginning of the pass")
+		int activeCells;
+		@Label("Tiles")
+		int tiles;
+		@Label("Ignited")
+		int ignited;
+		@Label("Burned Out")
+		int burnedOut;
+
+		public void record(PropagationMode mode, int activeCells, int tiles, int ignited, int burnedOut){
+			end();
+			if(shouldCommit()){
+				this.mode = mode.name();
+				this.activeCells = activeCells;
+				this.tiles = tiles;
+				this.ignited = ignited;
+				this.burnedOut = burnedOut;
+				commit();
+			}
+		}
+	}
+
+	@Name("sim.firecontrol.TaskUpdate")
+	@Label("Task Update")
+	@Category({"Fire Control", "Forest"})
+	@Description("TaskTracker.refresh, with the changes of the tasks since the previous one")
+	public static class TaskUpdate extends Event{
+		@Label("Active Tasks")
+		int tasks;
+		@Label("Created")
+		int created;
+		@Label("Merged")
+		int merged;
+		@Label("Split Checks")
+		int checked;
+		@Label("Retired")
+		int retired;
+
+		public void record(int tasks, int created, int merged, int checked, int retired){
+			end();
+			if(shouldCommit()){
+				this.tasks = tasks;
+				this.created = created;
+				this.merged = merged;
+				this.checked = checked;
+				this.retired = retired;
+				commit();
+			}
+		}
+	}
+}
@@ -0,0 +1,191 @@
+package sim.app.firecontrol;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Headless experiment runner.
+ * Runs every combination of the given params for every seed, without the GUI
+ * and without the MASON loop, on a bounded pool of threads. Each run owns its
+ * own Ignite (@see IgniteConfig), hence the runs do not interfere.
+ * The outcome of each run is appended to a single CSV file as soon as the run
+ * is over (@see CsvResultSink), so that a long sweep can be inspected, or
+ * stopped, at any time.
+ *
+ * Usage, each param takes a comma separated list of values, seeds also take
+ * ranges (e.g. 1-1000):
+ *   java sim.app.firecontrol.SweepRunner -uavs 4,8 -range 30,60 -velocity 0.02
+ *        -extinguish 10 -size 60,100 -propagation SEQUENTIAL,TILED -seeds 1-100
+ *        -threads 16 -maxSteps 100000 -out sweep.csv
+ * The TILED runs share the common ForkJoinPool, unless -propagationThreads
+ * gives each run a pool of its own.
+ *
+ * @see RunResult for the columns
+ */
+public class SweepRunner{
+
+	/* the grid of params */
+	public int[] uavs = {8};
+	public double[] ranges = {60};
+	public double[] velocities = {0.02};
+	public int[] extinguishSteps = {10};
+	public int[] sizes = {60};
+	public PropagationMode[] modes = {PropagationMode.SEQUENTIAL};
+	public long[] seeds = {1};
+
+	public int threads = Runtime.getRuntime().availableProcessors();
+	public int tileSize = 64; //@see IgniteConfig.tileSize
+	public int propagationThreads = 0; //@see IgniteConfig.propagationThreads
+	public long maxSteps = 100000; //stop a run that is not contained by then
+
+	/**
+	 * Run the whole grid, writing the outcome of each run to the given sink.
+	 * @return the number of runs completed
+	 */
+	public int run(ResultSink sink) throws InterruptedException {
+		AtomicInteger done = new AtomicInteger();
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		for(int numUAVs : uavs){
+			for(double range : ranges){
+				for(double velocity : velocities){
+					for(int extinguish : extinguishSteps){
+						for(int size : sizes){
+							for(PropagationMode mode : modes){
+								for(long seed : seeds){
+									IgniteConfig config = new IgniteConfig();
+									config.communicationRange = range;
+									config.linearvelocity = velocity;
+									config.stepToExtinguish = extinguish;
+									config.width = size;
+									config.height = size;
+									config.propagationMode = mode;
+									config.tileSize = tileSize;
+									config.propagationThreads = propagationThreads;
+									pool.execute(() -> {
+										try {
+											runOne(config, numUAVs, seed, sink);
+											done.incrementAndGet();
+										} catch (RuntimeException e) {
+											System.err.println("Exception in SweepRunner, seed " + seed + " " + e.toString());
+											e.printStackTrace();
+										}
+									});
+								}
+							}
+						}
+					}
+				}
+			}
+		}
+		pool.shutdown();
+		pool.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
+		return done.get();
+	}
+
+	/**
+	 * Run a single simulation until the fires are contained or maxSteps.
+	 * The outcome is written to the sink by Ignite.finish()
+	 */
+	private void runOne(IgniteConfig config, int numUAVs, long seed, ResultSink sink){
+		Ignite ignite = new Ignite(seed);
+		ignite.config = config;
+		ignite.numUAVs = numUAVs;
+		ignite.resultSink = sink;
+		ignite.start();
+		try {
+			while(ignite.schedule.getSteps() < maxSteps && ignite.schedule.step(ignite));
+		} finally {
+			ignite.finish();
+		}
+	}
+
+	private static int[] parseInts(String s){
+		String[] values = s.split(",");
+		int[] result = new int[values.length];
+		for(int i=0; i<values.length; i++){
+			result[i] = Integer.parseInt(values[i].trim());
+		}
+		return result;
+	}
+
+	private static double[] parseDoubles(String s){
+		String[] values = s.split(",");
+		double[] result = new double[values.length];
+		for(int i=0; i<values.length; i++){
+			result[i] = Double.parseDouble(values[i].trim());
+		}
+		return result;
+	}
+
+	private static PropagationMode[] parseModes(String s){
+		String[] values = s.split(",");
+		PropagationMode[] result = new PropagationMode[values.length];
+		for(int i=0; i<values.length; i++){
+			result[i] = PropagationMode.valueOf(values[i].trim());
+		}
+		return result;
+	}
+
+	/**
+	 * Parse a list of seeds and ranges of seeds, e.g. 1,5,10-20
+	 */
+	private static long[] parseSeeds(String s){
+		List<Long> seeds = new ArrayList<>();
+		for(String value : s.split(",")){
+			value = value.trim();
+			int dash = value.indexOf('-', 1);
+			if(dash > 0){
+				long from = Long.parseLong(value.substring(0, dash));
+				long to = Long.parseLong(value.substring(dash + 1));
+				for(long seed=from; seed<=to; seed++){
+					seeds.add(seed);
+				}
+			} else {
+				seeds.add(Long.parseLong(value));
+			}
+		}
+		long[] result = new long[seeds.size()];
+		for(int i=0; i<result.length; i++){
+			result[i] = seeds.get(i);
+		}
+		return result;
+	}
+
+	public static void main(String[] args) throws IOException, InterruptedException {
+		SweepRunner sweep = new SweepRunner();
+		String out = "sweep.csv";
+		for(int i=0; i+1<args.length; i+=2){
+			String value = args[i+1];
+			switch(args[i]){
+			case "-uavs":		sweep.uavs = parseInts(value); break;
+			case "-range":		sweep.ranges = parseDoubles(value); break;
+			case "-velocity":	sweep.velocities = parseDoubles(value); break;
+			case "-extinguish":	sweep.extinguishSteps = parseInts(value); break;
+			case "-size":		sweep.sizes = parseInts(value); break;
+			case "-propagation":	sweep.modes = parseModes(value); break;
+			case "-tileSize":	sweep.tileSize = Integer.parseInt(value); break;
+			case "-propagationThreads":	sweep.propagationThreads = Integer.parseInt(value); break;
+			case "-seeds":		sweep.seeds = parseSeeds(value); break;
+			case "-threads":	sweep.threads = Integer.parseInt(value); break;
+			case "-maxSteps":	sweep.maxSteps = Long.parseLong(value); break;
+			case "-out":		out = value; break;
+			default:
+				System.err.println("Unknown option " + args[i]);
+				System.exit(1);
+			}
+		}
+
+		long start = System.currentTimeMillis();
+		try(ResultSink sink = new CsvResultSink(new File(out))){
+			int runs = sweep.run(sink);
+			System.out.println(runs + " runs written to " + out + " in " + (System.currentTimeMillis() - start) + " ms");
+		}
+		System.exit(0);
+	}
+}
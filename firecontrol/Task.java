@@ -1,6 +1,6 @@
 package sim.app.firecontrol;
 
-import java.util.LinkedList;
+import java.util.BitSet;
 
 import sim.util.Int2D;
 
@@ -8,73 +8,222 @@ import sim.util.Int2D;
  * This class is used to represent a complex task in the world.
  * Practically speaking, a task represents a fire, not a single cell but a
  * group of cells on fire.
- *  
+ *
+ * The cells of the task are stored by index in a CellSet, while the Forest keeps
+ * the owner of each cell (@see Forest.owner), so that the task of a cell, or of
+ * its neighbors, is known without scanning the tasks. Only the cells on fire are
+ * part of a task, TaskTracker keeps the tasks in line with the fires. The same
+ * cells are indexed by location in the frontier, where the UAVs look for the
+ * next cell to extinguish (@see FireFrontier).
+ *
+ * The geometry of the task is kept up to date at every change, without visiting
+ * the cells again:
+ * - the centroid is the mean of the cells, from the running sums of the coordinates
+ * - the bounding box comes from the number of cells per column and per row
+ * - the radius is the distance from the centroid to the farthest corner of the
+ *   bounding box, so that all the cells are within the radius
+ *
  * @author Albani Dario
  * @email albani@dis.uniroma1.it
  *
  */
 public class Task{
+	public final int id; //unique ID, @see TaskTracker.getTask
 	public Int2D centroid;
 	public double radius; //the utility?
-	public LinkedList<WorldCell> cells;
+	public CellSet cells;
+	public FireFrontier frontier; //the same cells by location
 
-	public Task(Int2D centroid, int initialRadius){
+	private final Forest forest;
+	private long sumX;
+	private long sumY;
+	private Histogram columns;
+	private Histogram rows;
+
+	public Task(int id, Forest forest, Int2D centroid, int initialRadius){
+		this.id = id;
+		this.forest = forest;
 		this.centroid = centroid;
 		this.radius = initialRadius;
-		this.cells = new LinkedList<>();
+		this.cells = new CellSet();
+		this.frontier = new FireFrontier(forest);
+		this.columns = new Histogram();
+		this.rows = new Histogram();
+	}
+
+	//GETTERS, the bounding box of the task
+	public int getMinX(){
+		return columns.min;
+	}
+
+	public int getMaxX(){
+		return columns.max;
+	}
+
+	public int getMinY(){
+		return rows.min;
+	}
+
+	public int getMaxY(){
+		return rows.max;
 	}
 
 	public void addCell(WorldCell cell){
-		this.cells.add(cell);
+		addCell(cell.getIndex());
 	}
 
-	/*
-	 * Used to keep the information about the task up to date.
-	 * When a new fire is created, the cell calls  this function to let the 
-	 * task recompute its radius.
-	 * 
-	 * @return true, if the update succeeds and the cell is added
+	/**
+	 * Add a cell to the task and mark the task as its owner.
+	 * @return true, if the cell was not already part of the task
 	 */
-	public boolean notifyNewFire(WorldCell cell){
-		for(WorldCell wc : this.cells){
-			if(cell.isNeighborOf(wc)){
-				this.cells.add(cell);
-				//now update the radius
-				Int2D cellPos = new Int2D(cell.x, cell.y);
-				this.radius = Math.max(cellPos.distance(this.centroid), this.radius);
-				return true;
-			}
+	public boolean addCell(int index){
+		if(this.cells.add(index)){
+			forest.setOwner(index, this.id);
+			include(index);
+			return true;
 		}
 		return false;
 	}
 
-	/*
-	 * Used to keep the information about the task up to date.
-	 * When a new fire is created, the cell calls  this function to let the 
-	 * task recompute its radius.
-	 * 
-	 * @return true, if the update succeeds and the cell is added
+	/**
+	 * Remove a cell from the task, the cell is left without owner.
+	 * @return true, if the cell was part of the task
 	 */
-	public boolean notifyExtinguishedFire(WorldCell cell) {
-		if(this.cells.remove(cell)){
-			Int2D pos = new Int2D(cell.x, cell.y);
-			//if it was a border cell
-			if(radius == pos.distance(centroid)){
-				//update the radius
-				radius = 0;
-				for(WorldCell wc : this.cells){
-					pos = new Int2D(wc.x, wc.y);
-					this.radius = Math.max(pos.distance(centroid), radius);
-				}
-			}
+	public boolean removeCell(int index){
+		if(this.cells.remove(index)){
+			forest.setOwner(index, -1);
+			frontier.remove(forest.xOf(index), forest.yOf(index));
+			sumX -= forest.xOf(index);
+			sumY -= forest.yOf(index);
+			columns.remove(forest.xOf(index));
+			rows.remove(forest.yOf(index));
+			updateGeometry();
 			return true;
 		}
 		return false;
 	}
 
+	/**
+	 * Move all the cells of the given task into this.
+	 * The owner of the moved cells is not updated, @see TaskTracker.find
+	 */
+	public void absorb(Task other){
+		for(int i=0; i<other.cells.size(); i++){
+			int index = other.cells.get(i);
+			if(this.cells.add(index)){
+				include(index);
+			}
+		}
+		other.cells.clear();
+		other.frontier.clear();
+		other.sumX = 0;
+		other.sumY = 0;
+		other.columns = new Histogram();
+		other.rows = new Histogram();
+		other.radius = 0;
+	}
+
+	private void include(int index){
+		frontier.add(forest.xOf(index), forest.yOf(index));
+		sumX += forest.xOf(index);
+		sumY += forest.yOf(index);
+		columns.add(forest.xOf(index));
+		rows.add(forest.yOf(index));
+		updateGeometry();
+	}
+
+	/**
+	 * Recompute centroid and radius from the sums and the bounding box. O(1)
+	 * An empty task keeps its last centroid.
+	 */
+	private void updateGeometry(){
+		int n = this.cells.size();
+		if(n == 0){
+			this.radius = 0;
+			return;
+		}
+		int cx = (int) Math.round((double) sumX / n);
+		int cy = (int) Math.round((double) sumY / n);
+		if(centroid == null || centroid.x != cx || centroid.y != cy){
+			this.centroid = new Int2D(cx, cy);
+		}
+		double dx = Math.max(cx - columns.min, columns.max - cx);
+		double dy = Math.max(cy - rows.min, rows.max - cy);
+		this.radius = Math.sqrt(dx*dx + dy*dy);
+	}
+
 	@Override
 	public boolean equals(Object obj){
 		Task task = (Task) obj;
-		return task.centroid == this.centroid;
+		return task.id == this.id;
+	}
+
+	@Override
+	public int hashCode(){
+		return this.id;
+	}
+
+	/**
+	 * Number of cells of the task per coordinate (column or row).
+	 * The counts are stored in a window of coordinates that grows when needed,
+	 * while a bitset marks the non empty coordinates so that, when the extreme
+	 * one is emptied, the next one is found with a scan of the bitset words.
+	 */
+	private static class Histogram{
+		int min = Integer.MAX_VALUE;
+		int max = Integer.MIN_VALUE;
+		private int origin;
+		private int[] counts = new int[0];
+		private BitSet occupied = new BitSet();
+
+		void add(int c){
+			if(counts.length == 0){
+				origin = c - 4;
+				counts = new int[8];
+			} else if(c < origin || c >= origin + counts.length){
+				grow(c);
+			}
+			if(counts[c - origin]++ == 0){
+				occupied.set(c - origin);
+			}
+			min = Math.min(min, c);
+			max = Math.max(max, c);
+		}
+
+		void remove(int c){
+			if(--counts[c - origin] == 0){
+				occupied.clear(c - origin);
+				if(occupied.isEmpty()){
+					min = Integer.MAX_VALUE;
+					max = Integer.MIN_VALUE;
+				} else {
+					if(c == min){
+						min = origin + occupied.nextSetBit(c - origin);
+					}
+					if(c == max){
+						max = origin + occupied.previousSetBit(c - origin);
+					}
+				}
+			}
+		}
+
+		/**
+		 * Enlarge the window to include the given coordinate, doubling its size
+		 */
+		private void grow(int c){
+			int from = Math.min(origin, c);
+			int to = Math.max(origin + counts.length, c + 1);
+			int slack = to - from;
+			int newOrigin = c < origin ? from - slack : from;
+			int[] newCounts = new int[to - from + slack];
+			System.arraycopy(counts, 0, newCounts, origin - newOrigin, counts.length);
+			BitSet newOccupied = new BitSet(newCounts.length);
+			for(int i = occupied.nextSetBit(0); i >= 0; i = occupied.nextSetBit(i + 1)){
+				newOccupied.set(i + origin - newOrigin);
+			}
+			origin = newOrigin;
+			counts = newCounts;
+			occupied = newOccupied;
+		}
 	}
 }
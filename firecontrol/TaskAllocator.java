@@ -0,0 +1,314 @@
+package sim.app.firecontrol;
+
+/**
+ * Assignment of the contractors of a CNP round to the tasks, the allocation
+ * of a manager in UAV.selectTask.
+ * The input is the matrix of the costs, the utilities proposed by the
+ * contractors for the tasks (lower is better, within [0, 1), @see
+ * UAV.utilFunction), and the number of contractors each task takes (@see
+ * UAV.defineTaskPriorities). Each contractor gets at most one task, and only
+ * a task it has a utility for.
+ * Leaving a contractor idle costs IDLE, as much as the worst utility, so the
+ * HUNGARIAN and AUCTION strategies minimize the total cost of the round: a
+ * contractor is left idle only when the task it could take is better used by
+ * others.
+ *
+ * The matrices are primitive arrays and the scratch space is kept between the
+ * calls, so that an allocation does not allocate once it has grown.
+ * Not thread safe, each run has its own (@see Ignite.allocator).
+ *
+ * @see AllocationStrategy
+ */
+public class TaskAllocator{
+
+	/* cost of a contractor with no task, every utility is lower */
+	public static final double IDLE = 1;
+	/* cost of a task the contractor did not propose for */
+	public static final double NO_BID = Double.POSITIVE_INFINITY;
+
+	/* least raise of a price in the auction, and the bids for each place
+	 * before the auction gives up */
+	private static final double EPSILON = 1e-7;
+	private static final int BIDS_PER_PLACE = 64;
+
+	public final AllocationStrategy strategy;
+
+	/* for each task, the contractors taken */
+	private int[] load = new int[0];
+
+	/* min cost flow: shortest path to each task, the idle contractor entering
+	 * the path and the previous task; the cheapest move of an assigned
+	 * contractor from a task to another one, and the contractor moved */
+	private double[] dist = new double[0];
+	private int[] entry = new int[0];
+	private int[] pred = new int[0];
+	private double[] move = new double[0];
+	private int[] via = new int[0];
+
+	/* auction: the places in the tasks, their price and owner; for each task
+	 * its first place, the number of places and the cheapest one; the
+	 * contractors without a place */
+	private double[] price = new double[0];
+	private int[] owner = new int[0];
+	private int[] first = new int[0];
+	private int[] places = new int[0];
+	private int[] cheapest = new int[0];
+	private int[] queue = new int[0];
+
+	public TaskAllocator(AllocationStrategy strategy){
+		this.strategy = strategy;
+	}
+
+	/**
+	 * @param cost, cost[c*tasks + t] is the utility of the contractor c for the task t, NO_BID if none
+	 * @param capacity, the number of contractors each task takes
+	 * @param assignment, filled with the task of each contractor, -1 if idle
+	 * @return the number of contractors with a task
+	 */
+	public int allocate(int contractors, int tasks, double[] cost, int[] capacity, int[] assignment){
+		for(int c=0; c<contractors; c++){
+			assignment[c] = -1;
+		}
+		if(contractors == 0 || tasks == 0){
+			return 0;
+		}
+		if(load.length < tasks){
+			load = new int[tasks];
+		}
+		for(int t=0; t<tasks; t++){
+			load[t] = 0;
+		}
+		switch(strategy){
+		case HUNGARIAN:
+			return minCostFlow(contractors, tasks, cost, capacity, assignment);
+		case AUCTION:
+			return auction(contractors, tasks, cost, capacity, assignment);
+		default:
+			return greedy(contractors, tasks, cost, capacity, assignment);
+		}
+	}
+
+	/**
+	 * The best pair first, the first task and contractor on ties
+	 */
+	private int greedy(int n, int m, double[] cost, int[] capacity, int[] assignment){
+		int assigned = 0;
+		while(true){
+			double min = IDLE;
+			int bestContractor = -1;
+			int bestTask = -1;
+			for(int t=0; t<m; t++){
+				if(load[t] >= capacity[t]){
+					continue;
+				}
+				for(int c=0; c<n; c++){
+					if(assignment[c] < 0 && cost[c*m + t] < min){
+						min = cost[c*m + t];
+						bestContractor = c;
+						bestTask = t;
+					}
+				}
+			}
+			if(bestContractor < 0){
+				return assigned;
+			}
+			assignment[bestContractor] = bestTask;
+			load[bestTask]++;
+			assigned++;
+		}
+	}
+
+	/**
+	 * Successive shortest paths: each step places one more contractor along
+	 * the cheapest path, an idle contractor entering a task and the assigned
+	 * ones moving from a task to the next, until the path costs more than
+	 * leaving the contractor idle. The paths are searched over the tasks only,
+	 * with Bellman-Ford, as they are few: O(n*m + m^3) per contractor placed.
+	 */
+	private int minCostFlow(int n, int m, double[] cost, int[] capacity, int[] assignment){
+		if(dist.length < m){
+			dist = new double[m];
+			entry = new int[m];
+			pred = new int[m];
+			move = new double[m*m];
+			via = new int[m*m];
+		}
+		int assigned = 0;
+		while(true){
+			//the cheapest idle contractor for each task
+			for(int t=0; t<m; t++){
+				dist[t] = NO_BID;
+				entry[t] = -1;
+				pred[t] = -1;
+			}
+			for(int t=0; t<m*m; t++){
+				move[t] = NO_BID;
+				via[t] = -1;
+			}
+			for(int c=0; c<n; c++){
+				int from = assignment[c];
+				for(int t=0; t<m; t++){
+					double value = cost[c*m + t];
+					if(value >= IDLE){
+						continue;
+					}
+					if(from < 0){
+						if(value < dist[t]){
+							dist[t] = value;
+							entry[t] = c;
+						}
+					} else if(t != from && value - cost[c*m + from] < move[from*m + t]){
+						//the cheapest contractor to move from a task to another one
+						move[from*m + t] = value - cost[c*m + from];
+						via[from*m + t] = c;
+					}
+				}
+			}
+			//the moves may lower the cost, there is no negative cycle
+			for(int round=1; round<m; round++){
+				boolean changed = false;
+				for(int t=0; t<m; t++){
+					if(dist[t] == NO_BID){
+						continue;
+					}
+					for(int u=0; u<m; u++){
+						if(via[t*m + u] >= 0 && dist[t] + move[t*m + u] < dist[u] - 1e-12){
+							dist[u] = dist[t] + move[t*m + u];
+							pred[u] = t;
+							changed = true;
+						}
+					}
+				}
+				if(!changed){
+					break;
+				}
+			}
+
+			//the cheapest task with room, if better than leaving the contractor idle
+			int best = -1;
+			for(int t=0; t<m; t++){
+				if(load[t] < capacity[t] && dist[t] < (best < 0 ? IDLE : dist[best])){
+					best = t;
+				}
+			}
+			if(best < 0){
+				return assigned;
+			}
+			int t = best;
+			for(int hops=0; pred[t] >= 0 && hops<m; hops++){
+				int c = via[pred[t]*m + t];
+				assignment[c] = t;
+				t = pred[t];
+			}
+			assignment[entry[t]] = t;
+			load[best]++;
+			assigned++;
+		}
+	}
+
+	/**
+	 * Auction: each contractor without a place bids for the cheapest place of
+	 * its best task, raising its price by how much the task is better than the
+	 * next option (another task, or being idle) plus EPSILON, and takes the
+	 * place of its owner. The places of a task are alike, so the next option is
+	 * looked for among the other tasks only, and the prices rise by the gaps
+	 * between the tasks. All the prices start from zero, a place never bid for
+	 * is free: the result is within n*EPSILON of the best total cost.
+	 * When many contractors have the same utilities the prices rise by EPSILON
+	 * only; past BIDS_PER_PLACE bids for each place the auction gives up and
+	 * the exact solver takes over.
+	 */
+	private int auction(int n, int m, double[] cost, int[] capacity, int[] assignment){
+		//the places of each task, no more than the contractors
+		int total = 0;
+		if(first.length < m){
+			first = new int[m];
+			places = new int[m];
+			cheapest = new int[m];
+		}
+		for(int t=0; t<m; t++){
+			first[t] = total;
+			places[t] = Math.min(capacity[t], n);
+			total += places[t];
+		}
+		if(price.length < total){
+			price = new double[total];
+			owner = new int[total];
+		}
+		if(queue.length < n){
+			queue = new int[n];
+		}
+		for(int p=0; p<total; p++){
+			price[p] = 0;
+			owner[p] = -1;
+		}
+		for(int t=0; t<m; t++){
+			cheapest[t] = first[t];
+		}
+		int size = 0;
+		for(int c=n-1; c>=0; c--){
+			queue[size++] = c;
+		}
+
+		long bids = (long) BIDS_PER_PLACE * total;
+		while(size > 0){
+			if(bids-- == 0){
+				return minCostFlow(n, m, cost, capacity, assignment);
+			}
+			int c = queue[--size];
+			//the best and the second best option, being idle is always one
+			double best = -IDLE;
+			double second = Double.NEGATIVE_INFINITY;
+			int task = -1;
+			for(int t=0; t<m; t++){
+				double value = cost[c*m + t];
+				if(value >= IDLE || places[t] == 0){
+					continue;
+				}
+				double v = -value - price[cheapest[t]];
+				if(v > best){
+					second = best;
+					best = v;
+					task = t;
+				} else if(v > second){
+					second = v;
+				}
+			}
+			if(task < 0){
+				//better idle
+				continue;
+			}
+			int place = cheapest[task];
+			price[place] += best - second + EPSILON;
+			if(owner[place] >= 0){
+				queue[size++] = owner[place];
+			}
+			owner[place] = c;
+			updateCheapest(task);
+		}
+
+		int assigned = 0;
+		for(int t=0; t<m; t++){
+			for(int p=first[t]; p<first[t] + places[t]; p++){
+				if(owner[p] >= 0){
+					assignment[owner[p]] = t;
+					assigned++;
+				}
+			}
+		}
+		return assigned;
+	}
+
+	/**
+	 * Find the cheapest place of the task
+	 */
+	private void updateCheapest(int t){
+		int at = first[t];
+		for(int p=first[t]+1; p<first[t] + places[t]; p++){
+			if(price[p] < price[at]){
+				at = p;
+			}
+		}
+		cheapest[t] = at;
+	}
+}
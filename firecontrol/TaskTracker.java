@@ -0,0 +1,339 @@
+package sim.app.firecontrol;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import sim.util.Int2D;
+import sim.util.IntBag;
+
+/**
+ * Keep the tasks in line with the fires in the forest.
+ * Each task is a connected group (8-neighborhood) of cells on fire:
+ * - a new fire joins the task of its neighbors, or starts a new task if none
+ * - when a new fire touches cells of different tasks, the fronts have met and
+ *   the tasks are merged, the smaller into the larger one
+ * - when a fire is extinguished or burns out, it leaves its task; if this may
+ *   split the task in two, the task is checked, lazily, in refresh()
+ * - empty tasks are removed from the list of the tasks
+ *
+ * Merging uses a union-find over the ids of the tasks: the owner plane of the
+ * forest is not rewritten, the owner of a cell is the representative of the id
+ * stored in the plane (@see find).
+ *
+ * @see Task
+ * @see Forest
+ */
+public class TaskTracker implements java.io.Serializable{
+	private static final long serialVersionUID = 1L;
+
+	/* offsets of the 8 neighbors of a cell, in ring order */
+	private static final int[] RING_X = {-1, 0, 1, 1, 1, 0, -1, -1};
+	private static final int[] RING_Y = {-1, -1, -1, 0, 1, 1, 1, 0};
+	/* for each position of the ring, the mask of the adjacent positions */
+	private static final int[] RING_ADJACENT = new int[8];
+	static{
+		for(int p=0; p<8; p++){
+			for(int q=0; q<8; q++){
+				if(p != q && Math.abs(RING_X[p] - RING_X[q]) <= 1 && Math.abs(RING_Y[p] - RING_Y[q]) <= 1){
+					RING_ADJACENT[p] |= 1 << q;
+				}
+			}
+		}
+	}
+
+	private final Forest forest;
+	private final List<Task> tasks; //the live tasks, @see Ignite.tasks
+	private ArrayList<Task> tasksById;
+	private int[] parent;
+	private CellSet dirty; //ids of the tasks that may be disconnected
+
+	/* changes since last refresh(), @see SimEvents.TaskUpdate */
+	private int created;
+	private int merged;
+	private int retired;
+
+	/* used to visit the cells of a task in refresh() */
+	private int[] visited;
+	private int visit;
+
+	public TaskTracker(Forest forest, List<Task> tasks){
+		this.forest = forest;
+		this.tasks = tasks;
+		this.tasksById = new ArrayList<>();
+		this.parent = new int[16];
+		this.dirty = new CellSet();
+	}
+
+	/**
+	 * @return the representative of the given task id
+	 */
+	public int find(int id){
+		while(parent[id] != id){
+			parent[id] = parent[parent[id]];
+			id = parent[id];
+		}
+		return id;
+	}
+
+	/**
+	 * @return the task with the given id, or the one it has been merged into;
+	 * null if the id is -1
+	 */
+	public Task getTask(int id){
+		return id < 0 ? null : tasksById.get(find(id));
+	}
+
+	/**
+	 * @return true if the task is still on fire and has not been merged into
+	 * another one
+	 */
+	public boolean isActive(Task task){
+		return !task.cells.isEmpty() && getTask(task.id) == task;
+	}
+
+	/**
+	 * @return the task of the cell with the given index, null if none
+	 */
+	public Task getTaskOf(int index){
+		return getTask(forest.getOwner(index));
+	}
+
+	/**
+	 * Generate a new task centered in the given cell on fire.
+	 */
+	public Task newTask(int index){
+		int id = tasksById.size();
+		Task t = new Task(id, forest, new Int2D(forest.xOf(index), forest.yOf(index)), 0);
+		t.addCell(index);
+		if(id == parent.length){
+			parent = java.util.Arrays.copyOf(parent, id * 2);
+		}
+		parent[id] = id;
+		tasksById.add(t);
+		tasks.add(t);
+		created++;
+		return t;
+	}
+
+	/**
+	 * A cell took fire
+	 * @return the task of the cell
+	 */
+	public Task notifyNewFire(int index){
+		int x = forest.xOf(index);
+		int y = forest.yOf(index);
+		Task task = null;
+		for(int p=0; p<8; p++){
+			if(forest.isInBounds(x + RING_X[p], y + RING_Y[p])){
+				Task other = getTaskOf(forest.index(x + RING_X[p], y + RING_Y[p]));
+				if(other == null || other == task){
+					continue;
+				}
+				if(task == null){
+					task = other;
+				} else {
+					task = merge(task, other);
+				}
+			}
+		}
+		if(task == null){
+			return newTask(index);
+		}
+		task.addCell(index);
+		return task;
+	}
+
+	/**
+	 * A cell on fire has been extinguished or burned out
+	 */
+	public void notifyExtinguishedFire(int index){
+		Task task = getTaskOf(index);
+		if(task == null){
+			return;
+		}
+		boolean bridge = isBridge(index, task.id);
+		task.removeCell(index);
+		if(task.cells.isEmpty()){
+			tasks.remove(task);
+			dirty.remove(task.id);
+			retired++;
+		} else if(bridge){
+			dirty.add(task.id);
+		}
+	}
+
+	/**
+	 * Split the tasks that have been disconnected since last call.
+	 * The cells of each task at risk are visited, the largest group keeps the
+	 * task while the others become new tasks.
+	 */
+	public void refresh(){
+		SimEvents.TaskUpdate event = new SimEvents.TaskUpdate();
+		event.begin();
+		int checked = dirty.size();
+		for(int i=0; i<dirty.size(); i++){
+			split(tasksById.get(dirty.get(i)));
+		}
+		dirty.clear();
+		event.record(tasks.size(), created, merged, checked, retired);
+		created = 0;
+		merged = 0;
+		retired = 0;
+	}
+
+	/**
+	 * Merge the smaller task into the larger one
+	 * @return the task left
+	 */
+	private Task merge(Task a, Task b){
+		Task into = a.cells.size() >= b.cells.size() ? a : b;
+		Task from = into == a ? b : a;
+		into.absorb(from);
+		parent[from.id] = into.id;
+		tasks.remove(from);
+		merged++;
+		if(dirty.remove(from.id)){
+			dirty.add(into.id);
+		}
+		return into;
+	}
+
+	/**
+	 * Check if removing the cell may disconnect the task: it does not if the
+	 * neighbors of the cell that are part of the task are connected among them.
+	 */
+	private boolean isBridge(int index, int task){
+		int x = forest.xOf(index);
+		int y = forest.yOf(index);
+		int ring = 0;
+		for(int p=0; p<8; p++){
+			if(forest.isInBounds(x + RING_X[p], y + RING_Y[p])){
+				int owner = forest.getOwner(forest.index(x + RING_X[p], y + RING_Y[p]));
+				if(owner >= 0 && find(owner) == task){
+					ring |= 1 << p;
+				}
+			}
+		}
+		if(ring == 0){
+			return false;
+		}
+		//flood the ring starting from its first position
+		int reached = Integer.lowestOneBit(ring);
+		int frontier = reached;
+		while(frontier != 0){
+			int p = Integer.numberOfTrailingZeros(frontier);
+			frontier &= frontier - 1;
+			int next = RING_ADJACENT[p] & ring & ~reached;
+			reached |= next;
+			frontier |= next;
+		}
+		return reached != ring;
+	}
+
+	/* CHECKPOINT, @see Checkpoint */
+
+	/**
+	 * @return the number of tasks ever created, live or not
+	 */
+	int getTaskCount(){
+		return tasksById.size();
+	}
+
+	/**
+	 * @return the task with the given id, not resolved (@see getTask)
+	 */
+	Task getTaskById(int id){
+		return tasksById.get(id);
+	}
+
+	int getParent(int id){
+		return parent[id];
+	}
+
+	/**
+	 * @return the ids of the tasks that may be disconnected
+	 */
+	int[] getDirty(){
+		int[] ids = new int[dirty.size()];
+		for(int i=0; i<ids.length; i++){
+			ids[i] = dirty.get(i);
+		}
+		return ids;
+	}
+
+	/**
+	 * Replace all the tasks, e.g. with the ones of a checkpoint.
+	 * @param all, the tasks ever created, the id of each task is its position
+	 * @param live, the ids of the tasks in the list of the tasks, in order
+	 */
+	void restore(Task[] all, int[] parent, int[] live, int[] dirty){
+		this.tasksById = new ArrayList<>(java.util.Arrays.asList(all));
+		this.parent = java.util.Arrays.copyOf(parent, Math.max(16, parent.length));
+		this.tasks.clear();
+		for(int id : live){
+			this.tasks.add(all[id]);
+		}
+		this.dirty.clear();
+		for(int id : dirty){
+			this.dirty.add(id);
+		}
+	}
+
+	private void split(Task task){
+		if(find(task.id) != task.id || task.cells.size() < 2){
+			return;
+		}
+		if(visited == null){
+			visited = new int[forest.size()];
+		}
+		visit++;
+
+		//collect the groups of connected cells
+		ArrayList<IntBag> groups = new ArrayList<>();
+		int largest = 0;
+		for(int i=0; i<task.cells.size(); i++){
+			int start = task.cells.get(i);
+			if(visited[start] == visit){
+				continue;
+			}
+			IntBag group = new IntBag();
+			visited[start] = visit;
+			group.add(start);
+			for(int k=0; k<group.numObjs; k++){
+				int x = forest.xOf(group.objs[k]);
+				int y = forest.yOf(group.objs[k]);
+				for(int p=0; p<8; p++){
+					if(forest.isInBounds(x + RING_X[p], y + RING_Y[p])){
+						int neighbor = forest.index(x + RING_X[p], y + RING_Y[p]);
+						int owner = forest.getOwner(neighbor);
+						if(visited[neighbor] != visit && owner >= 0 && find(owner) == task.id){
+							visited[neighbor] = visit;
+							group.add(neighbor);
+						}
+					}
+				}
+			}
+			if(!groups.isEmpty() && group.numObjs > groups.get(largest).numObjs){
+				largest = groups.size();
+			}
+			groups.add(group);
+		}
+
+		//the largest group keeps the task
+		for(int g=0; g<groups.size(); g++){
+			if(g == largest){
+				continue;
+			}
+			IntBag group = groups.get(g);
+			Task other = null;
+			for(int k=0; k<group.numObjs; k++){
+				task.removeCell(group.objs[k]);
+				if(other == null){
+					other = newTask(group.objs[k]);
+				} else {
+					other.addCell(group.objs[k]);
+				}
+			}
+		}
+	}
+}
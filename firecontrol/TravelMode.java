@@ -0,0 +1,17 @@
+/**
+ * Define how the UAVs move toward their target.
+ * STEPPED, the original movement: the UAVs are stepped at every step and move
+ * of IgniteConfig.linearvelocity at a time
+ * SCHEDULED, a UAV leaving for its target computes the step it gets there and
+ * is not stepped until then; its position on the way is computed only when it
+ * is needed, by a range query, the event log or the display
+ *
+ * @see UAV#travel
+ * @see Ignite#syncUAVs
+ */
+
+package sim.app.firecontrol;
+
+public enum TravelMode {
+	STEPPED, SCHEDULED
+}
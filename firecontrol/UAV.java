@@ -11,26 +11,12 @@
  */
 package sim.app.firecontrol;
 
-import java.util.LinkedHashSet;
-import java.util.LinkedList;
-import java.util.Set;
-import java.util.Map;
-import java.util.HashMap;
-import java.util.LinkedHashMap;
-import java.util.UUID;  
-import java.util.Comparator;
-
-import java.util.Random;
 
 import sim.engine.SimState;
 import sim.engine.Steppable;
 import sim.util.Double3D;
 import sim.util.Int3D;
-import sim.util.Int2D;
 
-import java.sql.Timestamp;
-import java.util.List; 
-import java.util.ArrayList; 
 import java.util.Arrays;
 import java.util.Collections;
 
@@ -45,48 +31,53 @@ public class UAV implements Steppable{
 	public Double3D target; //UAV target
 	public AgentAction action; //last action executed by the UAV
 	public DataPacketType dataType;
-	public static double communicationRange = 60; //communication range for the UAVs
 
 	// Agent's local knowledge 
-	public Set<WorldCell> knownCells; 
 	public Task myTask;
-	public String status;
+	int claimedCell = -1; //the cell the UAV is heading to, -1 if none, @see claim
+
+	/* the travel to the target, @see travel */
+	long departedAt = -1; //step of the first move, -1 if the UAV is not travelling
+	long arrivesAt; //step the UAV wakes up at the target
+	double fromX; //position at the departure
+	double fromY;
+	double toX; //position at the arrival
+	double toY;
+	long wakeOrder; //among the UAVs waking up at the same step, @see Ignite.wake
+	public UAVRole role; //@see ManagerElection
 	
-	// Agent's settings - static because they have to be the same for all the 
-	// UAV in the simulation. If you change it once, you change it for all the UAV.
-	public static double linearvelocity = 0.02;
-	//0.02;
-
-	//used to count the steps needed to extinguish a fire in a location
-	public static int stepToExtinguish = 10;
+	// Agent's settings - shared by all the UAVs of the same simulation run.
+	// If you change it once, you change it for all the UAVs of the run.
+	// @see IgniteConfig
+	private final IgniteConfig config;
 	//used to remember when first started to extinguish at current location
-	private int startedToExtinguishAt = -1;
+	int startedToExtinguishAt = -1;
 
-	public int[] alloc;
-	private Map<Task, Integer> tasksPriorities;
+	public int[] alloc; //UAVs assigned to each task in the last allocation of a manager
+	//ids of the UAVs in communication range, reused by each query
+	private int[] inRange;
 
 
-	public LinkedList<DataPacket> sentDataPackets;
-	public LinkedList<DataPacket> receivedDataPackets;
-	public LinkedList<DataPacket> processedDataPackets; 
+	public Mailbox sentDataPackets;
+	public Mailbox receivedDataPackets;
+	long packetCount; //packets sent so far, the sequence of their ids
+	public final ContractRound contractRound = new ContractRound(); //open CNP round of a manager
 
-	public UAV(int id, Double3D myPosition){
+	public UAV(int id, Double3D myPosition, IgniteConfig config){
 		//set agent's id
 		this.id = id;
+		this.config = config;
 		//set agent's position
 		this.x = myPosition.x;
 		this.y = myPosition.y;
 		this.z = myPosition.z;
 		//at the beginning agents have no action
 		this.action = null;
-		//at the beginning agents have no known cells 
-		this.knownCells = new LinkedHashSet<>();
 
-		this.status = null;
+		this.role = UAVRole.WORKER;
 
-		this.sentDataPackets = new LinkedList<>();
-		this.receivedDataPackets = new LinkedList<>();
-		this.processedDataPackets = new LinkedList<>();
+		this.sentDataPackets = new Mailbox(config.mailboxCapacity);
+		this.receivedDataPackets = new Mailbox(config.mailboxCapacity);
 
 
 	}
@@ -132,16 +123,17 @@ public class UAV implements Steppable{
 	public void step(SimState state){
 		Ignite ignite = (Ignite)state;
 
-		int anyManager = 0;
-		for(Object obj : ignite.UAVs){ 
-			UAV other = (UAV) obj;
-			if(other.status == "manager"){
-				++anyManager;
-			}
+		//woken up at the end of the travel
+		if(this.departedAt >= 0){
+			arrive(ignite);
 		}
 
-		if(anyManager == 0){
-			this.defineManagers(ignite);
+		if(ignite.election.isNeeded()){
+			SimEvents.Election election = new SimEvents.Election();
+			election.begin();
+			ignite.syncUAVs();
+			int recomputed = ignite.election.elect(ignite);
+			election.record(ignite, recomputed);
 		} 
 
 		AgentAction a = nextAction(ignite);
@@ -156,7 +148,11 @@ public class UAV implements Steppable{
 			// TODO Implement here your task allocation strategy
 			
 
+			SimEvents.CnpRound round = new SimEvents.CnpRound();
+			round.begin();
+			long sentBefore = this.sentDataPackets.getAdded();
 			selectTask(ignite); //<- change the signature if needed
+			round.record(ignite, this, sentBefore);
 
 			this.action = a; //why in case? 
 			break;
@@ -172,7 +168,11 @@ public class UAV implements Steppable{
 			selectCell(ignite); //<- change the signature if needed
 			
 		case MOVE:
-			move(state);
+			if(config.travel == TravelMode.SCHEDULED){
+				travel(ignite);
+			} else {
+				move(state);
+			}
 			break;
 
 		case EXTINGUISH:
@@ -181,8 +181,9 @@ public class UAV implements Steppable{
 				//retrieve discrete location of this
 				Int3D dLoc = ignite.air.discretize(new Double3D(this.x, this.y, this.z));
 				//extinguish the fire
-				((WorldCell)ignite.forest.field[dLoc.x][dLoc.y]).extinguish(ignite);
+				ignite.forest.getCell(dLoc.x, dLoc.y).extinguish(ignite);
 				this.target=null;
+				this.claim(ignite.forest, -1);
 			}
 
 			this.action = a;
@@ -191,6 +192,12 @@ public class UAV implements Steppable{
 		default:	
 			break;
 		}
+
+		//the next step, or the end of the travel
+		if(config.travel == TravelMode.SCHEDULED){
+			long wait = this.departedAt >= 0 ? this.arrivesAt - ignite.schedule.getSteps() : 1;
+			ignite.wake(this, ignite.schedule.getTime() + wait);
+		}
 	}
 
 	/**
@@ -212,14 +219,9 @@ public class UAV implements Steppable{
 		//if not, continue to move toward the target
 		else if(this.target.equals(ignite.air.discretize(new Double3D(x, y, z)))){
 			//if on fire then extinguish, otherwise move on
-			WorldCell cell = (WorldCell)ignite.forest.field[(int) x][(int) y];
-
-			//store the knowledge for efficient selection
-			this.knownCells.add(cell);
-
-			//TODO maybe, you can share the knowledge about the just extinguished cell here!
+			WorldCell cell = ignite.forest.getCell((int) x, (int) y);
 
-			if(cell.type.equals(CellType.FIRE))
+			if(cell.getType().equals(CellType.FIRE))
 				return AgentAction.EXTINGUISH;
 			else
 				return AgentAction.SELECT_CELL;
@@ -233,184 +235,128 @@ public class UAV implements Steppable{
 	 * Take the centroid of the fire and its expected radius and extract the new
 	 * task for the agent.
 	 */
-	private void selectTask(Ignite ignite) {
+	void selectTask(Ignite ignite) {
 		
-		if(this.status == "manager" || this.status == "_manager"){
+		//nothing to allocate, all the fires are gone
+		if(ignite.tasks.isEmpty()){
+			return;
+		}
+
+		if(this.role != UAVRole.WORKER){
 		
-			int numBid = 0;
-			int numPropose = 0;
-			Map<DataPacket, DataPacket> proposesForBids = new HashMap<>();
-			for(DataPacket sp : this.sentDataPackets){
-				if(sp.payload.type.equals(DataPacketType.BID)){
-					++numBid;
-					for(DataPacket rp : this.receivedDataPackets){
-						if(rp.payload.type.equals(DataPacketType.PROPOSE)){
-							if(sp.header.packetID == rp.payload.resPacketID){
-								proposesForBids.put(sp, rp);
-								++numPropose;
-								break;
-							}
-
-						}
-					}
+			ContractRound round = this.contractRound;
+			//the proposals received since the last step, nothing else is read
+			for(DataPacket rp : this.receivedDataPackets){
+				if(rp.type == DataPacketType.PROPOSE){
+					round.propose(rp);
 				}
 			}
+			this.receivedDataPackets.clear();
 
-			if(((this.status == "manager") && (numBid == numPropose) && numPropose > 0) || (this.status == "_manager")){
+			boolean awarded = false;
 
-				Map<Task, Map<Integer, Double>> proposedUtils = new HashMap<Task, Map<Integer, Double>>();
-				for(Task task : ignite.tasks){
-					Map<Integer, Double> idUtils = new HashMap<Integer, Double>();
-					for(Map.Entry<DataPacket, DataPacket> entry : proposesForBids.entrySet()){
-						Task tsk = (Task) entry.getKey().payload.object;
-						if(tsk == task){
-							int id = entry.getValue().header.senderID;
-							double util = (double) entry.getValue().payload.object;
+			if(((this.role == UAVRole.MANAGER) && round.isComplete()) || (this.role == UAVRole.LONE_MANAGER)){
 
-							idUtils.put(id, util);
-						}
-					}
-					double u = this.utilFunction(task, ignite);
-					idUtils.put(this.id, u);
-					proposedUtils.put(task, idUtils);
+				if(!round.isOpen()){
+					//no bid has been sent, this UAV alone takes a live task
+					round.open(this.packetCount, ignite.tasks.toArray(new Task[0]), this.id, this.inRange, 0);
 				}
 
-				int neighbors = 1;
-				for(Object _obj : ignite.UAVs){ 
-					UAV neighbor = (UAV) _obj;
-					if(neighbor != this){
-						if(isInCommunicationRange(new Double3D(neighbor.x, neighbor.y, neighbor.z))){
-							++neighbors;
-						}						
-					}
+				//the tasks of the round, the ones over since get no UAV
+				Task[] tasks = round.getTasks();
+				int numTasks = round.getTaskCount();
+				int self = round.getManager();
+				for(int t = 0; t < numTasks; ++t){
+					double util = ignite.taskTracker.isActive(tasks[t]) ? this.utilFunction(tasks[t], ignite) : TaskAllocator.NO_BID;
+					round.setUtility(self, t, util);
 				}
 
-				this.alloc = new int[ignite.tasks.size()];
-				this.tasksPriorities = this.defineTaskPriorities(ignite, neighbors);
-
-
-				for(int i = 0; i < neighbors; ++i){
-					double minUtil = 1.0;
-					Task task = null;
-					int id = -1;
-
-					for(Map.Entry<Task, Map<Integer, Double>> entry : proposedUtils.entrySet()){
-
-						Task tsk = entry.getKey();
-						
-						if(this.alloc[ignite.tasks.indexOf(tsk)] < this.tasksPriorities.get(tsk)){
+				ignite.syncUAVs();
+				int neighbors = 1 + ignite.uavIndex.count(x, y, z, config.communicationRange, this.id);
+				int[] capacity = this.defineTaskPriorities(ignite, tasks, numTasks, neighbors);
 
-							Map<Integer, Double> temp = new HashMap<Integer, Double>(entry.getValue());
+				int numContractors = round.getContractorCount();
+				int[] contractors = round.getContractors();
+				int[] assignment = new int[numContractors];
+				ignite.allocator.allocate(numContractors, numTasks, round.getCost(), capacity, assignment);
 
-							Map<Integer, Double> _temp = new LinkedHashMap<>();
-							temp.entrySet().stream().sorted(Map.Entry.comparingByValue())
-				                                .forEachOrdered(x -> _temp.put(x.getKey(), x.getValue()));
-
-							if(!_temp.isEmpty()){
-
-								Map.Entry<Integer, Double> item = _temp.entrySet().iterator().next();
-								int key = item.getKey();
-								double value = item.getValue(); 
-
-								if(minUtil > value){
-									minUtil = value;
-									task = entry.getKey();
-									id = key;
-								}
-							}
-						}
+				this.alloc = new int[numTasks];
+				for(int c = 0; c < numContractors; ++c){
+					if(assignment[c] < 0){
+						continue;
 					}
+					Task task = tasks[assignment[c]];
+					this.alloc[assignment[c]]++;
+					if(c == self){
+						this.myTask = task;
+						this.target = new Double3D(this.myTask.centroid.x, this.myTask.centroid.y, z);
+						this.claim(ignite.forest, -1);
+					} else {
+						DataPacket packet = DataPacket.award(this.nextPacketID(), this.id, ignite.schedule.getSteps(), task);
 
-					if(task != null){
-						for(Map.Entry<Task, Map<Integer, Double>> entry : proposedUtils.entrySet()){
-							
-							Map<Integer, Double> temp = entry.getValue();
-							final int _id = id;
-							temp.entrySet().removeIf(_entry -> _entry.getKey().equals(_id)); 	
-						}
-
-						this.alloc[ignite.tasks.indexOf(task)]++;
-					}
-
-					if(id == this.id){
-						this.myTask = task;	
-						this.target = new Double3D(this.myTask.centroid.x, this.myTask.centroid.y, z);	} else {
-						UUID uniqueID = UUID.randomUUID();
-						Timestamp timestamp = new Timestamp(System.currentTimeMillis());
-						DataPacket packet = new DataPacket(uniqueID, this.id, timestamp, 
-							                               DataPacketType.AWARD, null, task);
-
-						this.sendDataOne(ignite, id, packet);
+						this.sendDataOne(ignite, contractors[c], packet);
 					}
 				}
-			}
 
-			
-			if(this.sentDataPackets.size() == 0 && this.status == "manager"){
-				for(Task task : ignite.tasks){ 
-					this.sendDataMany(ignite, task);
-				}
+				//the round is over, its bids are not needed anymore
+				this.sentDataPackets.retire(DataPacketType.BID);
+				round.close();
+				awarded = true;
 			}
 
-			int counter = 0;
-			for(Object obj : ignite.UAVs){ 
-				UAV uav = (UAV) obj;
-				if(uav.status == "manager"){
-					++counter;
+			//open a new round, a bid for each task to each UAV in range
+			if(!awarded && !round.isOpen() && this.role == UAVRole.MANAGER){
+				Task[] tasks = ignite.tasks.toArray(new Task[0]);
+				int found = neighborsInRange(ignite);
+				round.open(this.packetCount, tasks, this.id, this.inRange, found);
+				for(Task task : tasks){
+					this.sendDataMany(ignite, task, this.inRange, found);
 				}
 			}
 
-		} else if(this.status == null){
+		} else {
 			for(DataPacket p : this.receivedDataPackets){
 				
-				if(this.receiveData(p) && (p.payload.type.equals(DataPacketType.BID))){
-					Task task = (Task) p.payload.object;
-					double util = this.utilFunction(task, ignite);
+				if(p.type == DataPacketType.BID){
+					double util = this.utilFunction(p.task, ignite);
 
-					UUID uniqueID = UUID.randomUUID();
-					Timestamp timestamp = new Timestamp(System.currentTimeMillis());
-					DataPacket packet = new DataPacket(uniqueID, this.id, timestamp, 
-						                               DataPacketType.PROPOSE, p.header.packetID, util);
+					DataPacket packet = DataPacket.propose(this.nextPacketID(), this.id, ignite.schedule.getSteps(), p, util);
 
-					this.sendDataOne(ignite, p.header.senderID, packet);
+					this.sendDataOne(ignite, p.senderID, packet);
+				} else if(p.type == DataPacketType.AWARD){
 
-					this.processedDataPackets.add(p);
-				} else if(this.receiveData(p) && (p.payload.type.equals(DataPacketType.AWARD))){
-
-					Task task = (Task) p.payload.object;
-					DataPacketType dataType = DataPacketType.ACCEPT;
+					boolean accepted = false;
 					
 					if(this.myTask == null){
-						this.myTask = task;
+						this.myTask = p.task;
 						this.target = new Double3D(this.myTask.centroid.x, this.myTask.centroid.y, z);
-					} else {
-						dataType = DataPacketType.REFUSE;
+						this.claim(ignite.forest, -1);
+						accepted = true;
 					}
 
-					UUID uniqueID = UUID.randomUUID();
-					Timestamp timestamp = new Timestamp(System.currentTimeMillis());
-					DataPacket packet = new DataPacket(uniqueID, this.id, timestamp, 
-						                               dataType, p.header.packetID, task);
-					
-					this.sendDataOne(ignite, p.header.senderID, packet);
+					DataPacket packet = DataPacket.reply(this.nextPacketID(), this.id, ignite.schedule.getSteps(), p, accepted);
 					
-					this.processedDataPackets.add(p);
+					this.sendDataOne(ignite, p.senderID, packet);
 				}
 			}
+			//all the bids and awards have been answered, workers read nothing else
+			this.receivedDataPackets.clear();
+			//a round left open by a former manager would wait forever
+			this.contractRound.close();
 		} 
 	}
 
 	private double utilFunction(Task t, Ignite ignite){
 		double numMoves = Math.max(Math.abs(t.centroid.x - this.x), Math.abs(t.centroid.y - this.y));
-		int maxMoves = Math.max(ignite.width, ignite.height);
+		int maxMoves = Math.max(ignite.config.width, ignite.config.height);
 		double utilMoves = 0.7 * ((double) numMoves / maxMoves);
 
 		int taskSize = t.cells.size();
-		int maxTaskSize = ignite.width * ignite.height;
+		int maxTaskSize = ignite.config.width * ignite.config.height;
 		double utilTaskSize = 0.2 * (1.0 - (double) taskSize / maxTaskSize);
 
 		double taskRadius = t.radius;
-		double maxTaskRadius = Math.sqrt(ignite.width * ignite.width + ignite.height * ignite.height);
+		double maxTaskRadius = Math.sqrt(ignite.config.width * ignite.config.width + ignite.config.height * ignite.config.height);
 		double utilTaskRadius = 0.1 * (1.0 - (double) taskRadius / maxTaskRadius);
 
 		double util = utilMoves + utilTaskSize + utilTaskRadius;
@@ -419,104 +365,60 @@ public class UAV implements Steppable{
 	}
 
 	/**
-	 * Take the centroid of the fire and its expected radius and select the next 
-	 * cell that requires closer inspection or/and foam. 
+	 * Select the next cell to extinguish: the cell on fire of the task nearest
+	 * to the UAV that no other UAV is heading to, @see FireFrontier.
+	 * The cell is claimed until the UAV has extinguished it or changes target.
 	 */
-	private void selectCell(Ignite ignite) {
+	void selectCell(Ignite ignite) {
 		//remember to set the new target at the end of the procedure
 		Double3D newTarget = null;
+		SimEvents.SelectCell event = new SimEvents.SelectCell();
+		event.begin();
 
-		int taskRadius = (int) Math.ceil(this.myTask.radius);
+		//the task may have been merged with another one
+		this.myTask = ignite.taskTracker.getTask(this.myTask.id);
+		Task task = this.myTask;
 
-		Int2D centroid = this.myTask.centroid;
+		//the nearest cell on fire of the task that no other UAV is heading to, none if the fire is over
+		int cell = task.frontier.nearest((int) x, (int) y, this.id, task.centroid.x, task.centroid.y, (int) Math.ceil(task.radius));
 
-		WorldCell lastCell = (WorldCell) this.knownCells.toArray()[ this.knownCells.size()-1 ];
+		event.record(this, task, cell);
 
-		int radius = 1;
-
-		int minI = -radius;
-		int minJ = -radius;
-
-		int maxI = radius;
-		int maxJ = radius;
-
-		int dx = lastCell.x - centroid.x;
-		int dy = lastCell.y - centroid.y;
-
-		if(lastCell.type.equals(CellType.BURNED)){
-			// Int2D pos = new Int2D(lastCell.x, lastCell.y); 
-			// radius = (int) pos.distance(centroid);
-			if( dx > 0 && dy < 0){
-				minI = 0;
-			} else if( dx < 0 && dy < 0){
-				maxJ = 0;
-			} else if( dx < 0 && dy > 0){
-				maxI = 0;
-			} else if( dx > 0 && dy > 0){
-				minJ = 0;
-			}
-		} 
-
-
-		List<Int2D> list = new ArrayList<>();
-		//int radius = (int) Math.ceil(this.myTask.radius);
-
-		while(radius <= taskRadius){
-			for(int i=minI; i<=maxI; i++){
-				for(int j=minJ; j<=maxJ; j++){
-
-					int x = lastCell.x + i;
-					int y = lastCell.y + j;
-					if(x >= 0 && x < ignite.width && y >= 0 && y < ignite.height){
-
-						WorldCell cell = (WorldCell)ignite.forest.field[(int) x][(int) y];
-						Int2D pos = new Int2D(x, y); 
-						double r = pos.distance(centroid);
-						if(!this.knownCells.contains(cell) && r <= taskRadius){
-							list.add(pos);
-						}
-					} 
-				}
-			}
-
-			if(list.isEmpty()) {
-				radius++;
-
-				maxI += 1;
-				maxJ += 1;
-				minI -= 1;
-				minJ -= 1;
-			} else {
-				break;
-			}
-		}
-
-		if(list.isEmpty()){
+		if(cell < 0){
 
+			//nothing left to do, wait for another task from a manager
 			this.myTask = null;
+			this.claim(ignite.forest, -1);
 
-			newTarget = new Double3D(lastCell.x, lastCell.y, z);
+			newTarget = new Double3D((int) x, (int) y, z);
 
 		} else {
-
-		    Random rand = new Random();
-		    Int2D allowedPos = list.get(rand.nextInt(list.size()));
-			newTarget = new Double3D(allowedPos.x, allowedPos.y, z);
+			this.claim(ignite.forest, cell);
+			newTarget = new Double3D(ignite.forest.xOf(cell), ignite.forest.yOf(cell), z);
 		}
 
 		this.target = newTarget;
 	}
 
-
-	private int randomIndent(){
-     	Random rand = new Random();
-    	return rand.nextInt((1 - (-1)) + 1) + (-1);
+	/**
+	 * Claim the cell the UAV is heading to, so that the others look for another
+	 * one (@see FireFrontier.nearest), releasing the previous claim
+	 * @param index, the cell, -1 to release only
+	 */
+	void claim(Forest forest, int index){
+		if(claimedCell >= 0 && forest.getClaim(claimedCell) == this.id){
+			forest.setClaim(claimedCell, -1);
+		}
+		claimedCell = index;
+		if(index >= 0){
+			forest.setClaim(index, this.id);
+		}
 	}
 
 	/**
 	 * Move the agent toward the target position
 	 * The agent moves at a fixed given velocity
-	 * @see this.linearvelocity
+	 * @see IgniteConfig.linearvelocity
 	 */
 	public void move(SimState state){
 		Ignite ignite = (Ignite) state;
@@ -529,20 +431,8 @@ public class UAV implements Steppable{
 
 		// compute the distance w.r.t. the target
 		// the z axis is only used when entering or leaving an area
-		double xdistance = this.target.x - myx;
-		double ydistance = this.target.y - myy;
-
-		if(xdistance < 0)
-			myx -= Math.min(Math.abs(xdistance), linearvelocity);
-		else
-			myx += Math.min(xdistance, linearvelocity);
-
-		if(ydistance < 0){ 
-			myy -= Math.min(Math.abs(ydistance), linearvelocity); 
-		}
-		else{	
-			myy += Math.min(ydistance, linearvelocity); 
-		}
+		myx = advance(myx, this.target.x);
+		myy = advance(myy, this.target.y);
 
 		// update position in the simulation
 		ignite.air.setObjectLocation(this, new Double3D(myx, myy, myz));
@@ -550,12 +440,126 @@ public class UAV implements Steppable{
 		this.x = myx;
 		this.y = myy;
 		this.z = myz;
+		ignite.uavIndex.update(this);
+		ignite.election.moved(this);
+	}
+
+	/**
+	 * One move along an axis toward the target, at most linearvelocity
+	 */
+	private double advance(double from, double to){
+		double distance = to - from;
+		if(distance < 0){
+			return from - Math.min(Math.abs(distance), config.linearvelocity);
+		}
+		return from + Math.min(distance, config.linearvelocity);
+	}
+
+	/**
+	 * Leave for the target and sleep until it is reached, @see TravelMode.SCHEDULED
+	 * The number of moves until nextAction would find the UAV over the target
+	 * is computed for each axis, then the UAV is taken in one go to the last
+	 * couple of moves, which are done as in move(), checking the cell after
+	 * each one. The arrival is the step of the stepped travel, but where the
+	 * rounding of the sum of the moves puts the stepped UAV on the other side
+	 * of a cell border. The UAV is scheduled again for that step, in between
+	 * its position is only computed when needed (@see sync).
+	 */
+	private void travel(Ignite ignite){
+		long skipped = Math.max(0, Math.max(movesTo(this.x, this.target.x), movesTo(this.y, this.target.y)) - 2);
+		double px = advance(position(this.x, this.target.x, skipped), this.target.x);
+		double py = advance(position(this.y, this.target.y, skipped), this.target.y);
+		long moves = skipped + 1;
+		//the cell of the target, as discretize floors
+		while(Math.floor(px) != this.target.x || Math.floor(py) != this.target.y || Math.floor(z) != this.target.z){
+			double nx = advance(px, this.target.x);
+			double ny = advance(py, this.target.y);
+			if(nx == px && ny == py){
+				//the target cannot be reached, wake up anyway
+				break;
+			}
+			px = nx;
+			py = ny;
+			moves++;
+		}
+		long step = ignite.schedule.getSteps();
+		this.departedAt = step;
+		this.arrivesAt = step + moves;
+		this.fromX = this.x;
+		this.fromY = this.y;
+		this.toX = px;
+		this.toY = py;
+		sync(ignite, step);
+	}
+
+	/**
+	 * @return the moves along an axis until the UAV is in the cell of the
+	 * target, the cell of x being floor(x), 0 if it never is
+	 */
+	private long movesTo(double from, double to){
+		if(config.linearvelocity <= 0){
+			return 0;
+		}
+		if(from < to){
+			return (long) Math.ceil((to - from) / config.linearvelocity);
+		}
+		if(from >= to + 1){
+			return (long) Math.floor((from - (to + 1)) / config.linearvelocity) + 1;
+		}
+		return 0;
+	}
+
+	/**
+	 * @return the position along an axis after the given moves toward the
+	 * target, in one go
+	 */
+	private double position(double from, double to, long moves){
+		double covered = moves * config.linearvelocity;
+		return from + Math.signum(to - from) * Math.min(Math.abs(to - from), covered);
+	}
+
+	/**
+	 * @return true if the UAV is on the way to its target, not stepped
+	 */
+	public boolean isTravelling(){
+		return this.departedAt >= 0;
+	}
+
+	/**
+	 * Bring a travelling UAV to its position at the end of the given step.
+	 * The moves on the way are not repeated: each axis is moved by the
+	 * distance covered so far, as travel does to skip them. The air is updated
+	 * at the arrival.
+	 */
+	void sync(Ignite ignite, long step){
+		long moves = step - this.departedAt + 1;
+		if(moves >= this.arrivesAt - this.departedAt){
+			this.x = this.toX;
+			this.y = this.toY;
+		} else {
+			this.x = position(this.fromX, this.target.x, moves);
+			this.y = position(this.fromY, this.target.y, moves);
+		}
+		ignite.uavIndex.update(this);
+		ignite.election.moved(this);
+	}
+
+	/**
+	 * The travel is over, the UAV is at its target
+	 */
+	private void arrive(Ignite ignite){
+		this.departedAt = -1;
+		this.x = this.toX;
+		this.y = this.toY;
+		ignite.air.setObjectLocation(this, new Double3D(this.x, this.y, this.z));
+		ignite.uavIndex.update(this);
+		ignite.election.moved(this);
 	}
 
 	/**
 	 * Start to extinguish the fire at current location.
 	 * @return true if enough time has passed and the fire is gone, false otherwise
-	 * @see this.stepToExtinguish
+	 * @see IgniteConfig.stepToExtinguish
 	 * @see this.startedToExtinguishAt
 	 */
 	private boolean extinguish(Ignite ignite){
@@ -563,7 +567,7 @@ public class UAV implements Steppable{
 			this.startedToExtinguishAt = (int) ignite.schedule.getSteps();
 		}
 		//enough time has passed, the fire is gone
-		if(ignite.schedule.getSteps() - startedToExtinguishAt == stepToExtinguish){
+		if(ignite.schedule.getSteps() - startedToExtinguishAt == config.stepToExtinguish){
 			startedToExtinguishAt = -1;
 			return true;
 		}		
@@ -575,48 +579,67 @@ public class UAV implements Steppable{
 	 * Check if the input location is within communication range
 	 */
 	public boolean isInCommunicationRange(Double3D otherLoc){
-		Double3D myLoc = new Double3D(x,y,z);
-		return myLoc.distance(otherLoc) <= UAV.communicationRange;
+		double dx = x - otherLoc.x;
+		double dy = y - otherLoc.y;
+		double dz = z - otherLoc.z;
+		return Math.sqrt(dx*dx + dy*dy + dz*dz) <= config.communicationRange;
 	}
 
 	/**
 	 * COMMUNICATION
-	 * Send a message to the team
+	 * Find the other UAVs within communication range, @see UAVIndex
+	 * @return the number of UAVs found, their ids are the first ones of inRange
 	 */
-	public void sendDataMany(Ignite ignite, Task task){
-		for(Object obj : ignite.UAVs){ //count also this uav
-			UAV other = (UAV) obj;
-			if(other != this) {
-				if(isInCommunicationRange(new Double3D(other.x, other.y, other.z))){
-					UUID uniqueID = UUID.randomUUID();
-					Timestamp timestamp = new Timestamp(System.currentTimeMillis());  
-					DataPacket packet = new DataPacket(uniqueID, this.id, timestamp, 
-						                               DataPacketType.BID, null, task);
-
-					other.receivedDataPackets.add(packet);
-					this.sentDataPackets.add(packet);
-				}
-			}
+	private int neighborsInRange(Ignite ignite){
+		if(inRange == null || inRange.length < ignite.UAVs.numObjs){
+			inRange = new int[ignite.UAVs.numObjs];
 		}
+		ignite.syncUAVs();
+		return ignite.uavIndex.query(x, y, z, config.communicationRange, this.id, inRange);
 	}
 
-	public void sendDataOne(Ignite ignite, int id, DataPacket packet){
-		for(Object obj : ignite.UAVs){ //count also this uav
-			UAV other = (UAV) obj;
-			if(other.id == id) {
-				other.receivedDataPackets.add(packet);
-				this.sentDataPackets.add(packet);
+	/**
+	 * COMMUNICATION
+	 * Send a BID for the task to each of the given UAVs, @see ContractRound
+	 */
+	public void sendDataMany(Ignite ignite, Task task, int[] receivers, int count){
+		for(int i = 0; i < count; i++){
+			UAV other = (UAV) ignite.UAVs.objs[receivers[i]];
+			DataPacket packet = DataPacket.bid(this.nextPacketID(), this.id, ignite.schedule.getSteps(), task);
+
+			if(other.receivedDataPackets.add(packet) != null){
+				ignite.stats.messagesDropped.increment();
+			}
+			this.sentDataPackets.add(packet);
+			ignite.stats.messagesSent.increment();
+			if(ignite.eventLog != null){
+				ignite.eventLog.packet(this.id, other.id, packet);
 			}
 		}
 	}
 
+	public void sendDataOne(Ignite ignite, int id, DataPacket packet){
+		//the id of a UAV is its position in Ignite.UAVs
+		if(id < 0 || id >= ignite.UAVs.numObjs){
+			return;
+		}
+		UAV other = (UAV) ignite.UAVs.objs[id];
+		if(other.receivedDataPackets.add(packet) != null){
+			ignite.stats.messagesDropped.increment();
+		}
+		this.sentDataPackets.add(packet);
+		ignite.stats.messagesSent.increment();
+		if(ignite.eventLog != null){
+			ignite.eventLog.packet(this.id, other.id, packet);
+		}
+	}
 
 	/**
 	 * COMMUNICATION
-	 * Receive a message from the team
+	 * @return the id of the next packet sent by this UAV, @see DataPacket
 	 */
-	public boolean receiveData(DataPacket packet){
-		return !(this.processedDataPackets.contains(packet) ? true : false);
+	long nextPacketID(){
+		return packetCount++;
 	}
 
 	/**
@@ -635,7 +658,8 @@ public class UAV implements Steppable{
 			UAV other = (UAV) obj;
 			
 			Task task = other.myTask;
-			if(task != null)
+			//skip the tasks that are over
+			if(task != null && ignite.tasks.contains(task))
 				status[ignite.tasks.indexOf(task)]++;
 		}
 		
@@ -653,92 +677,57 @@ public class UAV implements Steppable{
 		return id+"UAV-"+x+","+y+","+z+"-"+action;
 	} 	
 
-	private Map<Task, Integer> defineTaskPriorities(Ignite ignite, int numUAVs){
-		Map<Task, Double> utilTasks = new HashMap<>();
-		for(Task t : ignite.tasks){
+	/**
+	 * @return the number of UAVs for each of the first numTasks tasks, none
+	 * to the tasks no longer active
+	 */
+	private int[] defineTaskPriorities(Ignite ignite, Task[] tasks, int numTasks, int numUAVs){
+		double[] utilTasks = new double[numTasks];
+		int active = 0;
+		for(int i = 0; i < numTasks; ++i){
+			Task t = tasks[i];
+			if(!ignite.taskTracker.isActive(t)){
+				utilTasks[i] = Double.NaN;
+				continue;
+			}
+			++active;
 			int taskSize = t.cells.size();
-			int maxTaskSize = ignite.width * ignite.height;
+			int maxTaskSize = ignite.config.width * ignite.config.height;
 			double utilTaskSize = 0.7 * ((double) taskSize / maxTaskSize);
 
 			double taskRadius = t.radius;
-			double maxTaskRadius = Math.sqrt(ignite.width * ignite.width + ignite.height * ignite.height);
+			double maxTaskRadius = Math.sqrt(ignite.config.width * ignite.config.width + ignite.config.height * ignite.config.height);
 			double utilTaskRadius = 0.3 * ((double) taskRadius / maxTaskRadius);
 			
-			double util = utilTaskSize + utilTaskRadius;
-			utilTasks.put(t, util);
+			utilTasks[i] = utilTaskSize + utilTaskRadius;
 		}
 
-		//new map sorted by priority values	
-		Map<Task, Double> _utilTasks = new LinkedHashMap<>();
-		utilTasks.entrySet().stream()
-		    .sorted(Map.Entry.comparingByValue(Comparator.reverseOrder()))
-		    .forEachOrdered(x -> _utilTasks.put(x.getKey(), x.getValue()));
-
-
-		int w = numUAVs / ignite.tasks.size();
-		int r = numUAVs % ignite.tasks.size();
-
-		Map<Task, Integer> tasksPriorities = new HashMap<>();
-		for(Task t : ignite.tasks){
-			tasksPriorities.put(t, w);
-		}
-		
-		int counter = 0;
-		for(Map.Entry<Task, Double> entry : _utilTasks.entrySet()){
-			if(counter < r){
-				tasksPriorities.put(entry.getKey(), tasksPriorities.get(entry.getKey()) + 1);			
-			}
-			++counter;
+		int[] tasksPriorities = new int[numTasks];
+		if(active == 0){
+			return tasksPriorities;
 		}
 
-		return tasksPriorities;
-	}
-
-	public void defineManagers(Ignite ignite){
-		Map<UAV, LinkedList<UAV>> items = new HashMap<>();
-		for(Object obj : ignite.UAVs){ 
+		int w = numUAVs / active;
+		int r = numUAVs % active;
 
-			UAV current = (UAV) obj;
-
-			LinkedList<UAV> neighbors = new LinkedList<>();
-			for(Object _obj : ignite.UAVs){ 
-				UAV neighbor = (UAV) _obj;
-				if(current != neighbor){
-					Double3D currentLoc = new Double3D(current.x, current.y, current.z);
-					Double3D neighborLoc = new Double3D(neighbor.x, neighbor.y, neighbor.z);
-
-					if(currentLoc.distance(neighborLoc) <= UAV.communicationRange){
-						neighbors.add(neighbor);
-					}
-				}
+		for(int i = 0; i < numTasks; ++i){
+			if(!Double.isNaN(utilTasks[i])){
+				tasksPriorities[i] = w;
 			}
-
-			items.put(current, neighbors);
 		}
 
-		while(!items.isEmpty()){
-			int max = 0;
-			UAV manager = null;
-
-			for(Map.Entry<UAV, LinkedList<UAV>> entry : items.entrySet()){
-				int size = entry.getValue().size();
-				if( size >= max){
-					manager = entry.getKey();
-					max = size;
+		//one more UAV to the r tasks with the highest priority
+		for(int counter = 0; counter < r; ++counter){
+			int best = -1;
+			for(int i = 0; i < numTasks; ++i){
+				if(!Double.isNaN(utilTasks[i]) && tasksPriorities[i] == w && (best < 0 || utilTasks[i] > utilTasks[best])){
+					best = i;
 				}
 			}
-
-			if(items.get(manager).isEmpty()){
-				manager.status = "_manager";
-			} else {
-				manager.status = "manager";
-			}
-
-			for(Object _obj : items.get(manager)){
-				items.remove(_obj);
-			}
-			items.remove(manager);
+			tasksPriorities[best]++;
 		}
+
+		return tasksPriorities;
 	}
 }
 
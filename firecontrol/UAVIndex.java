@@ -0,0 +1,161 @@
+package sim.app.firecontrol;
+
+import java.util.Arrays;
+
+import sim.util.Bag;
+
+/**
+ * Uniform grid over the positions of the UAVs of a run, to find the UAVs within
+ * a range without scanning all of them.
+ * The cells of the grid are squares over the ground, as large as the range of
+ * communication, so that a query by that range visits at most 3x3 cells; the
+ * altitude is checked only by the exact distance. The UAVs of each cell are kept
+ * in an intrusive doubly linked list over the ids of the UAVs (the position in
+ * Ignite.UAVs), so moving a UAV from a cell to another and querying do not
+ * allocate anything.
+ *
+ * The index is built by Ignite.start() and kept up to date by UAV.move, or by
+ * Ignite.syncUAVs for the UAVs travelling (@see TravelMode).
+ *
+ * @see UAV#isInCommunicationRange(UAV)
+ */
+public class UAVIndex implements java.io.Serializable{
+	private static final long serialVersionUID = 1L;
+
+	private final double cellSize;
+	private final int cols;
+	private final int rows;
+
+	/* first UAV of each cell, -1 if none */
+	private final int[] head;
+	/* for each UAV, the next and the previous in its cell and the cell, -1 if none */
+	private final int[] next;
+	private final int[] prev;
+	private final int[] cellOf;
+
+	/* the positions of the UAVs, packed */
+	private final double[] x;
+	private final double[] y;
+	private final double[] z;
+
+	public UAVIndex(Bag UAVs, IgniteConfig config){
+		this.cellSize = Math.max(config.communicationRange, 1);
+		this.cols = Math.max((int) Math.ceil(config.width / cellSize), 1);
+		this.rows = Math.max((int) Math.ceil(config.height / cellSize), 1);
+		this.head = new int[cols*rows];
+		Arrays.fill(head, -1);
+
+		int n = UAVs.numObjs;
+		this.next = new int[n];
+		this.prev = new int[n];
+		this.cellOf = new int[n];
+		this.x = new double[n];
+		this.y = new double[n];
+		this.z = new double[n];
+		Arrays.fill(cellOf, -1);
+		for(int i=0; i<n; i++){
+			update((UAV) UAVs.objs[i]);
+		}
+	}
+
+	/**
+	 * Move the given UAV to its current position
+	 */
+	public void update(UAV uav){
+		int id = uav.id;
+		x[id] = uav.x;
+		y[id] = uav.y;
+		z[id] = uav.z;
+		int cell = cellAt(uav.x, uav.y);
+		if(cell == cellOf[id]){
+			return;
+		}
+		//unlink from the old cell
+		if(cellOf[id] >= 0){
+			if(prev[id] >= 0){
+				next[prev[id]] = next[id];
+			} else {
+				head[cellOf[id]] = next[id];
+			}
+			if(next[id] >= 0){
+				prev[next[id]] = prev[id];
+			}
+		}
+		//and link at the head of the new one
+		cellOf[id] = cell;
+		prev[id] = -1;
+		next[id] = head[cell];
+		if(head[cell] >= 0){
+			prev[head[cell]] = id;
+		}
+		head[cell] = id;
+	}
+
+	/**
+	 * Find the UAVs whose distance from the given position is at most the range.
+	 * @param exclude, the id of a UAV to leave out (e.g. the one asking), -1 for none
+	 * @param found, filled with the ids of the UAVs in range, sorted, it must be
+	 * as long as the number of UAVs
+	 * @return the number of UAVs found
+	 */
+	public int query(double px, double py, double pz, double range, int exclude, int[] found){
+		int count = 0;
+		int fromX = clamp((int) Math.floor((px - range) / cellSize), cols);
+		int toX = clamp((int) Math.floor((px + range) / cellSize), cols);
+		int fromY = clamp((int) Math.floor((py - range) / cellSize), rows);
+		int toY = clamp((int) Math.floor((py + range) / cellSize), rows);
+		for(int cy=fromY; cy<=toY; cy++){
+			for(int cx=fromX; cx<=toX; cx++){
+				for(int id=head[cy*cols + cx]; id>=0; id=next[id]){
+					if(id != exclude && inRange(id, px, py, pz, range)){
+						found[count++] = id;
+					}
+				}
+			}
+		}
+		//in the same order of Ignite.UAVs
+		Arrays.sort(found, 0, count);
+		return count;
+	}
+
+	/**
+	 * @return the number of UAVs whose distance from the given position is at most the range
+	 * @param exclude, the id of a UAV to leave out, -1 for none
+	 */
+	public int count(double px, double py, double pz, double range, int exclude){
+		int count = 0;
+		int fromX = clamp((int) Math.floor((px - range) / cellSize), cols);
+		int toX = clamp((int) Math.floor((px + range) / cellSize), cols);
+		int fromY = clamp((int) Math.floor((py - range) / cellSize), rows);
+		int toY = clamp((int) Math.floor((py + range) / cellSize), rows);
+		for(int cy=fromY; cy<=toY; cy++){
+			for(int cx=fromX; cx<=toX; cx++){
+				for(int id=head[cy*cols + cx]; id>=0; id=next[id]){
+					if(id != exclude && inRange(id, px, py, pz, range)){
+						count++;
+					}
+				}
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Same test of Double3D.distance, so that the outcome of a query is the
+	 * same of a scan of all the UAVs
+	 */
+	private boolean inRange(int id, double px, double py, double pz, double range){
+		double dx = x[id] - px;
+		double dy = y[id] - py;
+		double dz = z[id] - pz;
+		return Math.sqrt(dx*dx + dy*dy + dz*dz) <= range;
+	}
+
+	private int cellAt(double px, double py){
+		return clamp((int) Math.floor(py / cellSize), rows)*cols + clamp((int) Math.floor(px / cellSize), cols);
+	}
+
+	private static int clamp(int c, int size){
+		return c < 0 ? 0 : c >= size ? size - 1 : c;
+	}
+}
@@ -0,0 +1,14 @@
+/**
+ * Define the roles of the UAVs in the Contract Net Protocol.
+ * WORKER bids for the tasks announced by the managers in range
+ * MANAGER announces the tasks to the UAVs in range and awards them
+ * LONE_MANAGER is a manager with no UAV in range, it awards the tasks to itself
+ *
+ * @see ManagerElection
+ */
+
+package sim.app.firecontrol;
+
+public enum UAVRole {
+	WORKER, MANAGER, LONE_MANAGER
+}
@@ -1,46 +1,38 @@
 package sim.app.firecontrol;
 
-import sim.engine.SimState;
-import sim.engine.Steppable;
-import sim.util.Double3D;
 import sim.util.Int2D;
 
 /**
- * Abstract class that implements a generic cell 
+ * Lightweight view over a single cell of the forest.
  * There are 4 different kinds of forest cell:
  * - normal, trees are still in good health
  * - fire, there are some fires in the area and the cell requires attention
- * - burned, there is nothing left to save 
+ * - burned, there is nothing left to save
  * - water, the cell is part of a lake or a river
- * 
+ *
+ * The state of the cell is not stored here but in the Forest planes, hence two
+ * views over the same location are equal and always reflect the same state.
+ * The dynamics of the cells are computed by FireDynamics, their params are
+ * part of the IgniteConfig of the run.
+ *
+ * @see Forest
+ * @see FireDynamics
+ * @see IgniteConfig
+ *
  * @author dario albani
- * @mail albani@dis.uniroma1.it	
+ * @mail albani@dis.uniroma1.it
  */
-public class WorldCell implements Steppable{
+public class WorldCell implements java.io.Serializable{
 	private static final long serialVersionUID = 1L;
-	public int x; //cell x location
-	public int y; //cell y location
-	public CellType type; //type of the cell 	
+	public final int x; //cell x location
+	public final int y; //cell y location
+	private final Forest forest; //where the state of the cell is stored
 
-	//params
-	public static double statusThreshold = 10E-3;
-	public static double normalStatusMultiplier = 10E-3;
-	public static double fireStatusMultiplier = 5*10E-4;
-	public static double selfIgniteThreshold = 1-10E-5;
-	public static int selfIgniteMax;
-	
-	//if this reach 0 and
-	// - the type is normal, the type becomes fire
-	// - the type is fire, the type becomes burned
-	private double status = 1;  
-	//avoid to enhance the fire status of a cell more than once per step
-	private boolean enhanced = false;
-	
 	/* Constructor*/
-	public WorldCell(int x, int y, CellType type){
+	public WorldCell(Forest forest, int x, int y){
+		this.forest = forest;
 		this.x = x;
 		this.y = y;
-		this.type = type;
 	}
 
 	//GETTERS
@@ -52,12 +44,23 @@ public class WorldCell implements Steppable{
 		return this.y;
 	}
 
+	public int getIndex(){
+		return forest.index(x, y);
+	}
+
 	public CellType getType(){
-		return this.type;
+		return forest.getType(x, y);
 	}
 
 	public void setType(CellType type){
-		this.type = type;
+		forest.setType(x, y, type);
+	}
+
+	//if this reach 0 and
+	// - the type is normal, the type becomes fire
+	// - the type is fire, the type becomes burned
+	public double getStatus(){
+		return forest.status[getIndex()];
 	}
 
 	/**
@@ -65,92 +68,37 @@ public class WorldCell implements Steppable{
 	 * Call it whenever a UAV is over this.
 	 */
 	public void extinguish(Ignite ignite){
-		if(this.type.equals(CellType.FIRE)){
-			this.type = CellType.EXTINGUISHED;
-			Ignite.cellsOnFire--;
-			this.status = 1;
-			//notify the tasks to let them compute the update
-			for(Task t : ignite.tasks){
-				if(t.notifyExtinguishedFire(this)){
-					//remove only from the (there must be only one) task
-					//that contain this
-					break;
-				}
-			}
+		int index = getIndex();
+		if(forest.is(index, CellType.FIRE)){
+			forest.setType(index, CellType.EXTINGUISHED);
+			ignite.stats.cellsOnFire.decrement();
+			forest.status[index] = 1;
+			//notify the task that contains this
+			ignite.taskTracker.notifyExtinguishedFire(index);
 		}
 	}
 
 	public boolean isNeighborOf(WorldCell wc) {
-		Int2D myPos = new Int2D(this.x, this.y);
-		Int2D otherPos = new Int2D(wc.x, wc.y);
-		return myPos.distance(otherPos)<2;
+		return Math.abs(this.x - wc.x) <= 1 && Math.abs(this.y - wc.y) <= 1;
 	}
-	
-	@Override
-	public void step(SimState state) {
-		Ignite ignite = (Ignite) state;
-		
-		enhanced = false;
-		
-		if(this.type.equals(CellType.WATER) || this.type.equals(CellType.BURNED)){
-			return;
-		} else if(this.type.equals(CellType.FIRE)){
-			//update the status
-			status -= fireStatusMultiplier*status*ignite.gaussianPDF(0, ignite.random.nextDouble(), 0.2);
 
-			//propagate fire to neighbors
-			for(int i=-1; i<=1; i++){
-				for(int j=-1; j<=1; j++){
-					if(Ignite.isInBounds(new Double3D(this.x+i, this.y+j, 1))){
-						WorldCell neighbor = ((WorldCell)ignite.forest.field[this.x+i][this.y+j]);
-						if(neighbor.type.equals(CellType.NORMAL) && !neighbor.enhanced){
-							neighbor.status -= normalStatusMultiplier*ignite.gaussianPDF(0, 2*ignite.random.nextDouble(), 0.2);
-							neighbor.enhanced = true;
-						}
-					}
-				}
-			}
-			//update own status
-			if(status<statusThreshold){
-				this.type = CellType.BURNED;
-				Ignite.cellsOnFire--;
-				Ignite.cellsBurned++;
-			}
-		} else if(this.type.equals(CellType.NORMAL)){
-			//check status
-			//and there is a random probably that the cell with take fire by itself
-			if(this.status < statusThreshold){
-				this.type = CellType.FIRE;
-				this.status = 1;		
-				Ignite.cellsOnFire++;
-				//notify the tasks to let them compute the update
-				for(Task t : ignite.tasks){
-					if(t.notifyNewFire(this)){
-						//add only to one task
-						break;
-					}
-				}
-			}else if(selfIgniteMax > 0){
-				if(ignite.schedule.getSteps()!=0 &&
-						ignite.schedule.getSteps()%500==0 && 
-						ignite.random.nextDouble()>selfIgniteThreshold){
-					this.type = CellType.FIRE;
-					this.status = 1;		
-					Ignite.cellsOnFire++;
-					selfIgniteMax--;
-					//generate a new task
-					Task t = new Task(new Int2D(this.x, this.y), 0);
-					t.addCell(this);
-					ignite.tasks.add(t);
-					
-				}
-			}
-		}
+	/**
+	 * @return the euclidean distance between this cell and the given location
+	 */
+	public double distance(Int2D pos){
+		double dx = (double) this.x - pos.x;
+		double dy = (double) this.y - pos.y;
+		return Math.sqrt(dx*dx + dy*dy);
 	}
-	
+
 	@Override
 	public boolean equals(Object obj){
 		WorldCell cell = (WorldCell) obj;
 		return cell.x == this.x && cell.y == this.y;
 	}
+
+	@Override
+	public int hashCode(){
+		return 31*x + y;
+	}
 }
@@ -0,0 +1,15 @@
+/**
+ * Define how WorldGenerator builds the lakes and the fires.
+ * CLASSIC, the original generator: for a given seed it builds the same worlds
+ * it always did, but its cost grows with the cube of the size of the world
+ * NOISE, lakes and fires are blobs whose border is shaped by a value noise;
+ * the cost grows with the area of the blobs, use it for very large worlds
+ *
+ * @see WorldGenerator
+ */
+
+package sim.app.firecontrol;
+
+public enum WorldGeneration {
+	CLASSIC, NOISE
+}
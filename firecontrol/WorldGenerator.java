@@ -0,0 +1,310 @@
+package sim.app.firecontrol;
+
+import java.util.BitSet;
+
+import ec.util.MersenneTwisterFast;
+
+/**
+ * Build the lakes and the fires of the forest of a simulation run.
+ * All the draws come from the random generator of the simulation, hence the
+ * same seed always builds the same world.
+ *
+ * CLASSIC is the original generator, draw for draw: a blob grows from its
+ * center, at each radius every location of the square around the center is
+ * drawn again. It writes the forest planes directly, with no object per
+ * location, and a bitset keeps the locations already extracted by a fire.
+ *
+ * NOISE builds each blob once: a location is part of the blob if its distance
+ * from the center is below the radius of the blob, stretched or shrunk by a
+ * value noise so that the border is irregular. The noise is hashed from the
+ * location, no draw is spent on it, and the cost of a blob is its area.
+ *
+ * @see WorldGeneration
+ * @see IgniteConfig
+ */
+public class WorldGenerator{
+
+	/* side of the cells of the noise lattice, for each octave */
+	private static final int[] OCTAVES = {8, 4, 2};
+
+	private final Ignite ignite;
+	private final Forest forest;
+	private final IgniteConfig config;
+	private final MersenneTwisterFast random;
+	private long noiseSeed;
+
+	public WorldGenerator(Ignite ignite){
+		this.ignite = ignite;
+		this.forest = ignite.forest;
+		this.config = ignite.config;
+		this.random = ignite.random;
+	}
+
+	/**
+	 * Place the lakes and then the fires, creating the tasks of the fires.
+	 */
+	public void generate(){
+		if(config.worldGeneration == WorldGeneration.NOISE){
+			noiseSeed = random.nextLong();
+			noiseLakes();
+			noiseFires();
+		} else {
+			classicLakes();
+			classicFires();
+		}
+	}
+
+	private void classicLakes(){
+		int width = forest.width;
+		int height = forest.height;
+		for(int l=0; l<config.lakes; l++){
+			int cx, cy;
+
+			//try to find a center for the lake
+			int maxTries = width*height;
+			do{
+				cx = random.nextInt(width);
+				cy = random.nextInt(height);
+				maxTries--;
+			}while(forest.is(forest.index(cx, cy), CellType.WATER) && maxTries>=0);
+
+			//break if not able to find a center after some time
+			if(maxTries < 0){
+				break;
+			}
+
+			//place the center of the lake
+			forest.setType(cx, cy, CellType.WATER);
+
+			int radius = 1;
+			//start creating the lake
+			while(radius<=random.nextInt(width)+2 && radius<=random.nextInt(height)+2){
+				//only the locations in bounds, out of bounds nothing is drawn
+				for(int i=Math.max(-radius, -cx); i<=Math.min(radius, width-1-cx); i++){
+					for(int j=Math.max(-radius, -cy); j<=Math.min(radius, height-1-cy); j++){
+						double p = ignite.gaussianPDF(Math.sqrt(i*i+j*j),(random.nextInt(3)-1)*random.nextDouble(), 3);
+
+						// if p is too low then there is no water
+						if(p > 0.25){
+							forest.setType(cx+i, cy+j, CellType.WATER);
+						}
+					}
+				}
+				radius++;
+			}
+		}
+	}
+
+	private void classicFires(){
+		int width = forest.width;
+		int height = forest.height;
+		BitSet extracted = new BitSet(forest.size());
+		for(int l=0; l<config.fires; l++){
+			int cx, cy;
+
+			//try to find a center for the fire
+			int maxTries = width*height;
+			do{
+				cx = random.nextInt(width);
+				cy = random.nextInt(height);
+				maxTries--;
+			}while((forest.is(forest.index(cx, cy), CellType.FIRE) || forest.is(forest.index(cx, cy), CellType.WATER)) && maxTries>=0);
+
+			//break if not able to find a center after some time
+			if(maxTries < 0){
+				break;
+			}
+
+			//place the center of the fire
+			setOnFire(forest.index(cx, cy));
+
+			//the locations extracted by this fire are not drawn again
+			extracted.clear();
+			extracted.set(forest.index(cx, cy));
+
+			int radius = 1;
+			//start creating the fire
+			while(radius<=random.nextInt(width)+2 && radius<=random.nextInt(height)+2){
+				for(int i=Math.max(-radius, -cx); i<=Math.min(radius, width-1-cx); i++){
+					for(int j=Math.max(-radius, -cy); j<=Math.min(radius, height-1-cy); j++){
+						int index = forest.index(cx+i, cy+j);
+						if(!extracted.get(index)){
+							double p = ignite.gaussianPDF(Math.sqrt(i*i+j*j),(random.nextInt(3)-1)*random.nextDouble(), 3);
+
+							// if p is too low then there is no fire
+							if(p > 0.85){
+								setOnFire(index);
+								extracted.set(index);
+							}
+						}
+					}
+				}
+				radius++;
+			}
+		}
+	}
+
+	private void noiseLakes(){
+		for(int l=0; l<config.lakes; l++){
+			int center = findCenter();
+			if(center < 0){
+				break;
+			}
+			double radius = config.lakeRadius * (0.5 + random.nextDouble());
+			fillBlob(center, radius, CellType.WATER);
+		}
+	}
+
+	private void noiseFires(){
+		for(int l=0; l<config.fires; l++){
+			int center = findCenter();
+			if(center < 0){
+				break;
+			}
+			double radius = config.fireRadius * (0.5 + random.nextDouble());
+			fillBlob(center, radius, CellType.FIRE);
+		}
+	}
+
+	/**
+	 * @return the index of a random NORMAL location, -1 if none has been found
+	 */
+	private int findCenter(){
+		for(int tries=0; tries<1000; tries++){
+			int index = forest.index(random.nextInt(forest.width), random.nextInt(forest.height));
+			if(forest.is(index, CellType.NORMAL)){
+				return index;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Turn the NORMAL locations of the blob into the given type.
+	 * The noise is needed only between the inner and the outer radius of the
+	 * blob, where the border can fall.
+	 */
+	private void fillBlob(int center, double radius, CellType type){
+		int cx = forest.xOf(center);
+		int cy = forest.yOf(center);
+		int reach = (int) Math.ceil(radius * (1 + config.roughness));
+		int fromX = Math.max(cx-reach, 0);
+		int toX = Math.min(cx+reach, forest.width-1);
+		int fromY = Math.max(cy-reach, 0);
+		int toY = Math.min(cy+reach, forest.height-1);
+		double inner = Math.max(radius * (1 - config.roughness), 0);
+		double outer = radius * (1 + config.roughness);
+		NoisePatch noise = null;
+
+		for(int y=fromY; y<=toY; y++){
+			for(int x=fromX; x<=toX; x++){
+				int index = forest.index(x, y);
+				if(!forest.is(index, CellType.NORMAL)){
+					continue;
+				}
+				double d2 = (double) (x-cx)*(x-cx) + (double) (y-cy)*(y-cy);
+				if(d2 > outer*outer){
+					continue;
+				}
+				if(d2 > inner*inner){
+					if(noise == null){
+						noise = new NoisePatch(fromX, fromY, toX, toY);
+					}
+					double border = radius * (1 + config.roughness * (2*noise.at(x, y) - 1));
+					if(d2 > border*border){
+						continue;
+					}
+				}
+				if(type == CellType.FIRE){
+					setOnFire(index);
+				} else {
+					forest.setType(index, type);
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return the value in [0, 1) of the given point of the noise lattice
+	 */
+	private double lattice(int lx, int ly, int size){
+		long h = noiseSeed ^ (lx * 0x9E3779B97F4A7C15L) ^ (ly * 0xC2B2AE3D27D4EB4FL) ^ size;
+		h = (h ^ (h >>> 30)) * 0xBF58476D1CE4E5B9L;
+		h = (h ^ (h >>> 27)) * 0x94D049BB133111EBL;
+		h = h ^ (h >>> 31);
+		return (h >>> 11) * 0x1.0p-53;
+	}
+
+	/**
+	 * Fractal value noise over a rectangle of the forest.
+	 * The points of the lattice covering the rectangle are hashed once, for
+	 * each octave, then each location interpolates its four neighbors.
+	 */
+	private class NoisePatch{
+		private final int[] originX = new int[OCTAVES.length];
+		private final int[] originY = new int[OCTAVES.length];
+		private final int[] stride = new int[OCTAVES.length];
+		private final double[][] values = new double[OCTAVES.length][];
+
+		NoisePatch(int fromX, int fromY, int toX, int toY){
+			for(int o=0; o<OCTAVES.length; o++){
+				int size = OCTAVES[o];
+				originX[o] = Math.floorDiv(fromX, size);
+				originY[o] = Math.floorDiv(fromY, size);
+				stride[o] = Math.floorDiv(toX, size) + 2 - originX[o];
+				int rows = Math.floorDiv(toY, size) + 2 - originY[o];
+				values[o] = new double[stride[o] * rows];
+				for(int ly=0; ly<rows; ly++){
+					for(int lx=0; lx<stride[o]; lx++){
+						values[o][ly*stride[o] + lx] = lattice(originX[o] + lx, originY[o] + ly, size);
+					}
+				}
+			}
+		}
+
+		/**
+		 * @return the noise in [0, 1) at the given location
+		 */
+		double at(int x, int y){
+			double sum = 0;
+			double amplitude = 1;
+			double total = 0;
+			for(int o=0; o<OCTAVES.length; o++){
+				int size = OCTAVES[o];
+				int lx = Math.floorDiv(x, size);
+				int ly = Math.floorDiv(y, size);
+				double fx = smooth((x - lx*size) / (double) size);
+				double fy = smooth((y - ly*size) / (double) size);
+				double[] v = values[o];
+				int i = (ly - originY[o])*stride[o] + lx - originX[o];
+				double top = lerp(v[i], v[i+1], fx);
+				double bottom = lerp(v[i+stride[o]], v[i+stride[o]+1], fx);
+				sum += amplitude * lerp(top, bottom, fy);
+				total += amplitude;
+				amplitude /= 2;
+			}
+			return sum / total;
+		}
+	}
+
+	private static double smooth(double t){
+		return t * t * (3 - 2*t);
+	}
+
+	private static double lerp(double a, double b, double t){
+		return a + (b - a) * t;
+	}
+
+	/**
+	 * A location takes fire and joins its task
+	 */
+	private void setOnFire(int index){
+		if(forest.is(index, CellType.FIRE)){
+			return;
+		}
+		forest.setType(index, CellType.FIRE);
+		ignite.stats.cellsOnFire.increment();
+		//generate the task for global knowledge
+		ignite.taskTracker.notifyNewFire(index);
+	}
+}